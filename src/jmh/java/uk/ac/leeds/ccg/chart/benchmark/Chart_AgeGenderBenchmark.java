@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.nio.file.Path;
+import org.openjdk.jmh.annotations.Param;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+
+/**
+ * {@link Chart_StageBenchmark} for the age gender example charts. These draw
+ * summary statistics for a fixed set of age classes, so the amount drawn does
+ * not depend on a data size and their default data are used.
+ */
+public class Chart_AgeGenderBenchmark extends Chart_StageBenchmark {
+
+    @Param({"AgeGenderBoxPlot", "AgeGenderLine"})
+    public String chartType;
+
+    @Override
+    protected Chart newChart(Generic_Environment e, Path file) {
+        title = chartType;
+        return Chart_BenchmarkCharts.newChart(chartType, 0, e, file);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.data.Chart_BarData;
+import uk.ac.leeds.ccg.chart.data.Chart_ColumnarScatterData;
+import uk.ac.leeds.ccg.chart.data.Chart_CsvLoader;
+import uk.ac.leeds.ccg.chart.data.Chart_LineData;
+import uk.ac.leeds.ccg.chart.data.Chart_LineSeries;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderBoxPlotExample;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderLineExample;
+import uk.ac.leeds.ccg.chart.examples.Chart_BarExample;
+import uk.ac.leeds.ccg.chart.examples.Chart_LineExample;
+import uk.ac.leeds.ccg.chart.examples.Chart_ScatterAndLinearRegressionExample;
+import uk.ac.leeds.ccg.chart.examples.Chart_ScatterExample;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+
+/**
+ * For creating the example charts with generated data of a given size for
+ * benchmarking. The chart settings are those used in the main method of each
+ * example. Data are generated from a fixed seed.
+ */
+public class Chart_BenchmarkCharts {
+
+    private static final RoundingMode RM = RoundingMode.HALF_UP;
+
+    /**
+     * @param type One of "Scatter", "ScatterAndLinearRegression", "Line",
+     * "Bar", "AgeGenderBoxPlot" or "AgeGenderLine".
+     * @param n The number of data values (ignored for the age gender charts).
+     * @param e The environment.
+     * @param file The output file of the chart.
+     * @return A new chart with data.
+     */
+    public static Chart newChart(String type, int n, Generic_Environment e,
+            Path file) {
+        switch (type) {
+            case "Scatter":
+                Chart_ScatterExample s = new Chart_ScatterExample(e, null,
+                        file, "PNG", type, 400, 657, "Expected", "Observed",
+                        true, -1, -2, RM);
+                s.setData(getScatterData(n, false));
+                return s;
+            case "ScatterAndLinearRegression":
+                Chart_ScatterAndLinearRegressionExample r
+                        = new Chart_ScatterAndLinearRegressionExample(e, null,
+                                file, "PNG", type, 256, 256, "Expected (X)",
+                                "Observed (Y)", false, -2, -1, RM);
+                r.setData(getScatterData(n, true));
+                return r;
+            case "Line":
+                ArrayList<BigRational> yPin = new ArrayList<>();
+                yPin.add(BigRational.ZERO);
+                Chart_LineExample l = new Chart_LineExample(e, null, file,
+                        "PNG", type, 500, 250, "X", "Y", null, yPin, null, 11,
+                        false, -2, -1, RM);
+                l.setData(getLineData(n));
+                return l;
+            case "Bar":
+                Chart_BarData bd = getBarData(n);
+                int yIncrement = Math.max(1, bd.maxY.toBigDecimal().intValue()
+                        / 10);
+                Chart_BarExample b = new Chart_BarExample(e, null, file, "PNG",
+                        type, 500, 250, "Value", "Count", true, 1, 1, null,
+                        BigDecimal.ZERO, BigDecimal.valueOf(yIncrement), 11,
+                        -2, -1, RM);
+                b.setData(bd);
+                return b;
+            case "AgeGenderBoxPlot":
+                Chart_AgeGenderBoxPlotExample bp
+                        = new Chart_AgeGenderBoxPlotExample(e, null, file,
+                                "PNG", type, 1000, 500, "Population", "Age",
+                                true, 5, 70, -2, -2, RM);
+                bp.setData(bp.getDefaultData());
+                return bp;
+            case "AgeGenderLine":
+                Chart_AgeGenderLineExample agl
+                        = new Chart_AgeGenderLineExample(e, null, file, "PNG",
+                                type, 1000, 500, "Population", "Age", true, 1,
+                                90, -2, -1, RM);
+                agl.setData(agl.getDefaultData());
+                return agl;
+            default:
+                throw new IllegalArgumentException("Unknown chart " + type);
+        }
+    }
+
+    /**
+     * @param n The number of points.
+     * @param linear If {@code true} y is x plus noise, otherwise x and y are
+     * independent.
+     * @return Scatter data with n points.
+     */
+    public static Chart_ColumnarScatterData getScatterData(int n,
+            boolean linear) {
+        Random random = new Random(0);
+        long[] ids = new long[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+            xs[i] = random.nextDouble(-100, 100);
+            ys[i] = linear ? xs[i] + random.nextGaussian() * 10
+                    : random.nextDouble(-300, 300);
+        }
+        Chart_ColumnarScatterData r = new Chart_ColumnarScatterData(n);
+        r.addAll(ids, xs, ys, 0, n);
+        return r;
+    }
+
+    /**
+     * @param n The total number of points.
+     * @return Line data with two random walk series of n / 2 points.
+     */
+    public static Chart_LineData getLineData(int n) {
+        Random random = new Random(0);
+        Chart_LineData r = new Chart_LineData();
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int m = Math.max(2, n / 2);
+        for (int s = 1; s <= 2; s++) {
+            Chart_LineSeries series = new Chart_LineSeries(m);
+            double y = 0;
+            for (int i = 0; i < m; i++) {
+                y += random.nextGaussian();
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+                series.add(i, y);
+            }
+            r.maps.put("map" + s, series);
+        }
+        r.minX = BigRational.ZERO;
+        r.maxX = BigRational.valueOf(m - 1);
+        r.minY = BigRational.valueOf(minY);
+        r.maxY = BigRational.valueOf(maxY);
+        for (int i = 0; i < 10; i++) {
+            int x = (int) ((long) (m - 1) * i / 9);
+            r.xAxisLabels.put(BigRational.valueOf(x), Integer.toString(x));
+        }
+        return r;
+    }
+
+    /**
+     * @param n The number of values counted.
+     * @return Bar data counting n normally distributed values in intervals of
+     * width 1.
+     */
+    public static Chart_BarData getBarData(int n) {
+        Random random = new Random(0);
+        double[] v = new double[n];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            v[i] = 50 + random.nextGaussian() * 10;
+            min = Math.min(min, v[i]);
+            max = Math.max(max, v[i]);
+        }
+        return Chart_CsvLoader.getBarData(v, n, min, max, BigRational.ONE);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.nio.file.Path;
+import org.openjdk.jmh.annotations.Param;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.examples.Chart_BarExample;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+
+/**
+ * {@link Chart_StageBenchmark} for the example charts whose data can be
+ * generated at any size: scatter, scatter and linear regression, line and
+ * bar. The data are made by {@link Chart_BenchmarkCharts}.
+ */
+public class Chart_DataSizeBenchmark extends Chart_StageBenchmark {
+
+    @Param({"Scatter", "ScatterAndLinearRegression", "Line", "Bar"})
+    public String chartType;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Override
+    protected Chart newChart(Generic_Environment e, Path file) {
+        title = chartType;
+        return Chart_BenchmarkCharts.newChart(chartType, size, e, file);
+    }
+
+    @Override
+    protected void drawAxesStage() {
+        if (chart instanceof Chart_BarExample b) {
+            b.drawAxes(2);
+        } else {
+            chart.drawAxes();
+        }
+    }
+}
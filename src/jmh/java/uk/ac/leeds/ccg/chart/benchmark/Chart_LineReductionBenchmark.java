@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.nio.file.Path;
+import org.openjdk.jmh.annotations.Param;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.core.Chart_Line;
+import uk.ac.leeds.ccg.chart.core.Chart_LineReduction;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+
+/**
+ * {@link Chart_StageBenchmark} for the line example chart with each
+ * {@link Chart_LineReduction}, to compare drawing every point of large series
+ * with drawing them reduced to the width of the data area.
+ */
+public class Chart_LineReductionBenchmark extends Chart_StageBenchmark {
+
+    @Param({"NONE", "LTTB", "M4"})
+    public String reduction;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int size;
+
+    @Override
+    protected Chart newChart(Generic_Environment e, Path file) {
+        title = "Line " + reduction;
+        Chart_Line r = (Chart_Line) Chart_BenchmarkCharts.newChart("Line",
+                size, e, file);
+        r.setReduction(Chart_LineReduction.valueOf(reduction));
+        return r;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Line2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.data.Chart_LineSeries;
+import uk.ac.leeds.ccg.chart.examples.Chart_LineExample;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * A JMH benchmark of the number of line segments of a series drawn per
+ * second by the line example chart:
+ * <ul>
+ * <li>{@code perSegment} - as it used to, drawing a Line2D for each segment
+ * and a cross at both ends of it;</li>
+ * <li>{@code path} - with {@link Chart_LineExample#drawSeries}, which strokes
+ * the segments as one path and draws the markers in batches, or not at all
+ * if the points are less than {@link #markerSpacing} columns apart on
+ * average.</li>
+ * </ul>
+ * The series has {@link #SEGMENTS} segments across the 500 columns of the
+ * data area, so with the default marker spacing of 8 no markers are drawn
+ * and with a marker spacing of 0 every point is marked as in
+ * {@code perSegment}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx8g"})
+public class Chart_LineSegmentBenchmark {
+
+    /**
+     * The number of segments drawn in each invocation.
+     */
+    public static final int SEGMENTS = 100000;
+
+    @Param({"0", "8"})
+    public double markerSpacing;
+
+    /**
+     * The chart drawn on.
+     */
+    protected Chart_LineExample chart;
+
+    /**
+     * The series drawn.
+     */
+    protected Chart_LineSeries series;
+
+    /**
+     * The graphics of the image the chart is drawn on.
+     */
+    protected Graphics2D g;
+
+    /**
+     * A directory for the chart output file (which is not written).
+     */
+    protected Path dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Generic_Environment e = new Generic_Environment(new Generic_Defaults());
+        dir = Files.createTempDirectory("chart-jmh");
+        chart = (Chart_LineExample) Chart_BenchmarkCharts.newChart("Line",
+                2 * (SEGMENTS + 1), e, dir.resolve("chart.PNG"));
+        chart.setMarkerSpacing(markerSpacing);
+        series = chart.getData().maps.firstEntry().getValue();
+        g = chart.render().createGraphics();
+        chart.draw(g);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        g.dispose();
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public void perSegment() {
+        double[] xs = series.getXs();
+        double[] ys = series.getYs();
+        int length = 3;
+        chart.setPaint(Color.BLUE);
+        int row0 = chart.getRow(ys[0]);
+        int col0 = chart.getCol(xs[0]);
+        for (int i = 1; i <= SEGMENTS; i++) {
+            int row = chart.getRow(ys[i]);
+            int col = chart.getCol(xs[i]);
+            chart.drawCross(col0, row0, length);
+            chart.drawCross(col, row, length);
+            chart.draw(new Line2D.Double(col0, row0, col, row));
+            row0 = row;
+            col0 = col;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public void path() {
+        chart.drawSeries(series.getXs(), series.getYs(), 0, SEGMENTS + 1,
+                Color.BLUE);
+    }
+}
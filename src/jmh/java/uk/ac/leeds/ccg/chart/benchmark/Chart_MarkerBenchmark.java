@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart_Graphics2DRenderTarget;
+import uk.ac.leeds.ccg.chart.core.Chart_Marker;
+import uk.ac.leeds.ccg.chart.examples.Chart_ScatterExample;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * A JMH benchmark comparing drawing {@link #n} x cross markers one Point2D at
+ * a time using {@link Chart_ScatterExample#draw(Point2D)} (with a new Point2D
+ * per marker as the scatter chart used to) against drawing them in one call
+ * to
+ * {@link Chart_ScatterExample#drawMarkers(int[], int[], int, Chart_Marker, int)}.
+ * The bytes allocated per marker are reported by the GC profiler, for
+ * instance with {@code -Djmh.args="-prof gc"}, as gc.alloc.rate.norm divided
+ * by {@link #n}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class Chart_MarkerBenchmark {
+
+    @Param({"1000000"})
+    public int n;
+
+    /**
+     * The chart drawn on.
+     */
+    protected Chart_ScatterExample chart;
+
+    /**
+     * The graphics of the image drawn on.
+     */
+    protected Graphics2D g;
+
+    /**
+     * The columns of the markers.
+     */
+    protected int[] cols;
+
+    /**
+     * The rows of the markers.
+     */
+    protected int[] rows;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Generic_Environment e = new Generic_Environment(new Generic_Defaults());
+        int w = 1000;
+        int h = 1000;
+        chart = new Chart_ScatterExample(e, null,
+                Paths.get("Scatter_Plot.PNG"), "PNG", "Scatter Plot", w, h,
+                "X", "Y", false, -1, -1, RoundingMode.HALF_UP);
+        g = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB)
+                .createGraphics();
+        chart.setRenderTarget(new Chart_Graphics2DRenderTarget(g));
+        chart.setPaint(Color.DARK_GRAY);
+        Random r = new Random(0);
+        cols = new int[n];
+        rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            cols[i] = r.nextInt(w);
+            rows[i] = r.nextInt(h);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public void drawPoints() {
+        for (int i = 0; i < n; i++) {
+            chart.draw(new Point2D.Double(cols[i], rows[i]));
+        }
+    }
+
+    @Benchmark
+    public void drawMarkers() {
+        chart.drawMarkers(cols, rows, n, Chart_Marker.CROSS, 4);
+    }
+}
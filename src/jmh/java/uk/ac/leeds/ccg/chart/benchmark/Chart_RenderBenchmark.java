@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.examples.Chart_ScatterExample;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * A JMH benchmark comparing the per chart latency of
+ * {@link Chart_ScatterExample#render()} with
+ * {@link Chart_ScatterExample#renderViaPrinterJob()}. Each invocation renders
+ * a newly constructed chart so that both routes do the same layout work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class Chart_RenderBenchmark {
+
+    /**
+     * The environment charts are created in.
+     */
+    protected Generic_Environment e;
+
+    /**
+     * A directory for the chart output file (which is not written).
+     */
+    protected Path dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        e = new Generic_Environment(new Generic_Defaults());
+        dir = Files.createTempDirectory("chart-jmh");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * @return A new scatter chart with its default data.
+     */
+    protected Chart_ScatterExample newChart() {
+        Chart_ScatterExample c = new Chart_ScatterExample(e, null,
+                dir.resolve("Scatter_Plot.PNG"), "PNG", "Scatter Plot", 400,
+                657, "Expected", "Observed", true, -1, -2,
+                RoundingMode.HALF_UP);
+        c.setData(c.getDefaultData());
+        return c;
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        return newChart().render();
+    }
+
+    @Benchmark
+    public BufferedImage renderViaPrinterJob() throws IOException {
+        return newChart().renderViaPrinterJob();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.core.Chart_PngEncoder;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * JMH benchmarks of the stages of drawing a chart: {@link Chart#drawOutline()},
+ * {@link Chart#drawTitle(String)}, the axes, {@link Chart#drawData()}, the
+ * whole of {@link Chart#draw()}, {@link Chart#render()} and encoding the
+ * rendered image as PNG with ImageIO and with {@link Chart_PngEncoder} at its
+ * fast, default and small settings.
+ *
+ * The chart is laid out and drawn once in the trial setup, so the stage
+ * benchmarks draw over an image of the final size with the layout already
+ * done. As the layout is then cached, {@link #render()} measures nothing
+ * and draws once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx8g"})
+public abstract class Chart_StageBenchmark {
+
+    /**
+     * The chart benchmarked.
+     */
+    protected Chart chart;
+
+    /**
+     * The title of {@link #chart}.
+     */
+    protected String title;
+
+    /**
+     * The image {@link #chart} is drawn on.
+     */
+    protected BufferedImage image;
+
+    /**
+     * The graphics of {@link #image}.
+     */
+    protected Graphics2D g;
+
+    /**
+     * A directory for the chart output file (which is not written).
+     */
+    protected Path dir;
+
+    /**
+     * @param e The environment.
+     * @param file The output file for the chart.
+     * @return A new chart with its data set. This should also set
+     * {@link #title}.
+     */
+    protected abstract Chart newChart(Generic_Environment e, Path file);
+
+    /**
+     * Draws the axes of {@link #chart} as its {@link Chart#draw()} does.
+     */
+    protected void drawAxesStage() {
+        chart.drawAxes();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Generic_Environment e = new Generic_Environment(new Generic_Defaults());
+        dir = Files.createTempDirectory("chart-jmh");
+        chart = newChart(e, dir.resolve("chart.PNG"));
+        image = chart.render();
+        g = image.createGraphics();
+        chart.draw(g);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        g.dispose();
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void drawOutline() {
+        chart.drawOutline();
+    }
+
+    @Benchmark
+    public void drawTitle() {
+        chart.drawTitle(title);
+    }
+
+    @Benchmark
+    public void drawAxes() {
+        drawAxesStage();
+    }
+
+    @Benchmark
+    public void drawData() {
+        chart.drawData();
+    }
+
+    @Benchmark
+    public Dimension draw() {
+        return chart.draw();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        return chart.render();
+    }
+
+    @Benchmark
+    public boolean encode() throws IOException {
+        return ImageIO.write(image, "PNG", OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void encodePngFast() throws IOException {
+        Chart_PngEncoder.forFormat("PNG:fast").write(image,
+                OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void encodePng() throws IOException {
+        Chart_PngEncoder.forFormat("PNG").write(image,
+                OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void encodePngSmall() throws IOException {
+        Chart_PngEncoder.forFormat("PNG:small").write(image,
+                OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart_StreamingLine;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * A JMH benchmark of bringing a {@link Chart_StreamingLine} up to date after
+ * appending {@link #newPoints} to a window of {@link #size} points, either
+ * with {@link Chart_StreamingLine#update()}, which scrolls the image and draws
+ * only the new points, or with {@link Chart_StreamingLine#redraw()}, which
+ * draws the whole window as re-rendering the chart from scratch does. The y
+ * values follow a sine wave so the Y axis fits throughout and updates do not
+ * redraw.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx8g"})
+public class Chart_StreamingLineBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"10", "1000"})
+    public int newPoints;
+
+    /**
+     * The chart benchmarked.
+     */
+    protected Chart_StreamingLine chart;
+
+    /**
+     * The x value of the last point appended.
+     */
+    protected double x;
+
+    /**
+     * A directory for the chart output file (which is not written).
+     */
+    protected Path dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Generic_Environment e = new Generic_Environment(new Generic_Defaults());
+        dir = Files.createTempDirectory("chart-jmh");
+        chart = new Chart_StreamingLine(e, null, dir.resolve("chart.PNG"),
+                "PNG", "Streaming Line", 500, 250, "X", "Y", size,
+                size + newPoints + 1, -2, -2, RoundingMode.HALF_UP);
+        x = 0d;
+        append(size);
+        chart.redraw();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * @param n The number of points to append.
+     */
+    protected void append(int n) {
+        for (int i = 0; i < n; i++) {
+            x += 1d;
+            chart.add(x, Math.sin(x / 1000d));
+        }
+    }
+
+    @Benchmark
+    public BufferedImage update() {
+        append(newPoints);
+        return chart.update();
+    }
+
+    @Benchmark
+    public BufferedImage redraw() {
+        append(newPoints);
+        return chart.redraw();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+import uk.ac.leeds.ccg.generic.visualisation.Generic_Visualisation;
+
+/**
+ * A JMH benchmark of the number of charts rendered and written per second.
+ * Each invocation submits a batch of {@link #BATCH} charts to a pool with a
+ * thread for each available processor, and each task renders and writes a
+ * chart. The write is handed to a separate pool so that a task waiting for it
+ * does not hold up the thread that would do it. The task is either:
+ * <ul>
+ * <li>{@code delayed} - as {@link Chart#run()} used to, rendering with
+ * {@link Chart#renderViaPrinterJob()} and passing a fixed delay to
+ * {@link Generic_Visualisation#saveImage} before the image is written;</li>
+ * <li>{@code completion} - using {@link Chart#run()} which writes the image as
+ * soon as it is rendered and completes {@link Chart#future}.</li>
+ * </ul>
+ * The delayed mode needs iterations longer than {@link #delay}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 30)
+@Measurement(iterations = 3, time = 30)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx8g"})
+public class Chart_ThroughputBenchmark {
+
+    /**
+     * The number of charts in a batch.
+     */
+    public static final int BATCH = 16;
+
+    @Param({"delayed", "completion"})
+    public String write;
+
+    @Param({"Scatter", "Line", "Bar"})
+    public String chartType;
+
+    @Param({"10000"})
+    public int size;
+
+    /**
+     * The delay in milliseconds for the delayed mode.
+     */
+    @Param({"10000"})
+    public long delay;
+
+    /**
+     * The charts in a batch.
+     */
+    protected Chart[] charts;
+
+    /**
+     * The pool used to render the charts.
+     */
+    protected ExecutorService es;
+
+    /**
+     * The pool used to write the charts.
+     */
+    protected ExecutorService writer;
+
+    /**
+     * For the delayed mode.
+     */
+    protected Generic_Visualisation vis;
+
+    /**
+     * A directory for the chart output files.
+     */
+    protected Path dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Generic_Environment e = new Generic_Environment(new Generic_Defaults());
+        vis = new Generic_Visualisation(e);
+        dir = Files.createTempDirectory("chart-jmh");
+        es = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        writer = Executors.newCachedThreadPool();
+        charts = new Chart[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            charts[i] = Chart_BenchmarkCharts.newChart(chartType, size, e,
+                    dir.resolve(chartType + i + ".PNG"));
+            charts[i].setExecutorService(writer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        es.shutdownNow();
+        writer.shutdownNow();
+        for (Chart c : charts) {
+            Files.deleteIfExists(c.getFile());
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batch() throws InterruptedException, ExecutionException {
+        List<Future<?>> fs = new ArrayList<>(BATCH);
+        for (Chart c : charts) {
+            if (write.equals("delayed")) {
+                fs.add(es.submit(() -> {
+                    BufferedImage image = c.renderViaPrinterJob();
+                    return vis.saveImage(writer, c, image, delay,
+                            c.getFormat(), c.getFile()).get();
+                }));
+            } else {
+                fs.add(es.submit(() -> {
+                    c.run();
+                    return c.getFuture().get();
+                }));
+            }
+        }
+        for (Future<?> f : fs) {
+            f.get();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 module uk.ac.leeds.ccg.chart {
     requires transitive java.logging;
     requires transitive java.desktop;
+    requires transitive jdk.jfr;
     requires transitive uk.ac.leeds.ccg.generic;
     requires uk.ac.leeds.ccg.math;
     requires uk.ac.leeds.ccg.data;
@@ -1,6 +1,5 @@
 package uk.ac.leeds.ccg.chart.core;
 
-import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
@@ -11,25 +10,32 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
+import javax.imageio.ImageIO;
 import javax.print.StreamPrintService;
 import javax.print.StreamPrintServiceFactory;
 import javax.print.attribute.HashPrintRequestAttributeSet;
@@ -39,6 +45,16 @@ import javax.swing.JFrame;
 
 import ch.obermuhlner.math.big.BigRational;
 import uk.ac.leeds.ccg.chart.data.Chart_Data;
+import uk.ac.leeds.ccg.chart.execution.Chart_EventListener;
+import uk.ac.leeds.ccg.chart.execution.Chart_JfrEvent;
+import uk.ac.leeds.ccg.chart.execution.Chart_JfrQueueWaitEvent;
+import uk.ac.leeds.ccg.chart.execution.Chart_JfrRenderEvent;
+import uk.ac.leeds.ccg.chart.execution.Chart_JfrStageEvent;
+import uk.ac.leeds.ccg.chart.execution.Chart_JfrWriteEvent;
+import uk.ac.leeds.ccg.chart.execution.Chart_MemoryAdmission;
+import uk.ac.leeds.ccg.chart.execution.Chart_RenderStage;
+import uk.ac.leeds.ccg.chart.execution.Chart_RenderStageEvent;
+import uk.ac.leeds.ccg.chart.execution.Chart_RenderingCompleteEvent;
 import uk.ac.leeds.ccg.chart.execution.Chart_Runnable;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
@@ -61,6 +77,98 @@ public abstract class Chart extends Chart_Runnable
     protected Path file;
     protected Graphics2D g2image;
     protected Graphics2D g2;
+
+    /**
+     * If this is set then all drawing primitives render to it, otherwise they
+     * render to a target derived from {@link #g2} and {@link #g2image} (see
+     * {@link #getRenderTarget()}).
+     */
+    protected Chart_RenderTarget renderTarget;
+
+    /**
+     * If {@code true} and both {@link #g2} and {@link #g2image} are set then
+     * drawing primitives render to both. Otherwise only {@link #g2} is
+     * rendered to if it is set.
+     */
+    protected boolean fanOut;
+
+    /**
+     * The target derived from {@link #g2}, {@link #g2image} and
+     * {@link #fanOut}, and the values it was derived from.
+     */
+    private Chart_RenderTarget defaultTarget;
+    private Graphics2D targetG2;
+    private Graphics2D targetG2image;
+    private boolean targetFanOut;
+
+    /**
+     * The maximum number of markers accumulated in {@link #markerPath} before
+     * it is rendered.
+     */
+    public static final int MARKER_BATCH_SIZE = 4096;
+
+    /**
+     * The maximum number of lines accumulated in {@link #linePath} before it
+     * is stroked.
+     */
+    public static final int LINE_BATCH_SIZE = 1 << 16;
+
+    /**
+     * The minimum number of markers for which tiled rasterisation is used.
+     */
+    public static final int TILED_MIN_MARKERS = 1 << 16;
+
+    /**
+     * A batch size for transforming points into reused arrays when markers
+     * are rasterised in tiles.
+     */
+    public static final int TILED_BATCH_SIZE = 1 << 20;
+
+    /**
+     * An estimate of the bytes needed per data point while drawing, for the
+     * transformed coordinates and paths.
+     */
+    public static final int MEMORY_PER_POINT = 16;
+
+    /**
+     * The number of tiles (bands of rows of the data area) markers are
+     * rasterised in parallel in when drawing to a
+     * {@link Chart_RasterRenderTarget}. If this is less than 2 then markers
+     * are rasterised serially.
+     */
+    protected int tiles;
+
+    /**
+     * Reused for the columns of markers drawn in tiles.
+     */
+    private int[] tileCols;
+
+    /**
+     * Reused for the rows of markers drawn in tiles.
+     */
+    private int[] tileRows;
+
+    /**
+     * Reused for the indexes of markers drawn in tiles grouped by band.
+     */
+    private int[] tileIndexes;
+
+    /**
+     * A path reused for drawing markers. This is initialised by
+     * {@link #getMarkerPath()}.
+     */
+    private Path2D.Double markerPath;
+
+    /**
+     * A path reused for drawing lines joining points. This is initialised by
+     * {@link #getLinePath()}.
+     */
+    private Path2D.Double linePath;
+
+    /**
+     * A line reused for drawing points.
+     */
+    private final Line2D.Double markerLine = new Line2D.Double();
     protected BufferedImage bi;
 
     public abstract Chart_Data getData();
@@ -70,6 +178,12 @@ public abstract class Chart extends Chart_Runnable
      */
     protected FontMetrics fontMetrics;
 
+    /**
+     * For getting {@link #fontMetrics} and measuring text. If {@code null}
+     * then {@link Chart_TextMetrics#getShared()} is used.
+     */
+    protected Chart_TextMetrics textMetrics;
+
     /**
      * For controlling if origin lines (lines at Y = 0 or X = 0) are drawn on
      * the plot.
@@ -214,6 +328,38 @@ public abstract class Chart extends Chart_Runnable
      */
     private BigRational cellWidth;
 
+    /**
+     * For storing data.minX as a double for {@link #getCol(double)}.
+     */
+    private double xOrigin;
+
+    /**
+     * For storing the number of columns per unit of x (the reciprocal of
+     * {@link #cellWidth}) as a double. This is zero if columns cannot be
+     * calculated.
+     */
+    private double xScale;
+
+    /**
+     * For storing data.minY as a double for {@link #getRow(double)}.
+     */
+    private double yOrigin;
+
+    /**
+     * For storing the number of rows per unit of y (the reciprocal of
+     * {@link #cellHeight}) as a double. This is zero if rows cannot be
+     * calculated.
+     */
+    private double yScale;
+
+    /**
+     * If {@code true} then {@link #getCol(BigRational)} and
+     * {@link #getRow(BigRational)} calculate using BigRational arithmetic.
+     * Otherwise (the default) a precomputed double precision transform is
+     * used.
+     */
+    protected boolean exact;
+
     /**
      * originRow the row index on which the origin is located (y = 0).
      */
@@ -239,9 +385,67 @@ public abstract class Chart extends Chart_Runnable
      */
     protected boolean addLegend;
 
+    /**
+     * If {@code true} then {@link #run()} renders using
+     * {@link #renderViaPrinterJob()}, otherwise (the default) it renders
+     * directly onto an in memory image using {@link #render()}.
+     */
+    protected boolean printerJobRendering;
+
+    /**
+     * If {@code true} then {@link #render()} draws using a
+     * {@link Chart_RasterRenderTarget} (unless {@link #renderTarget} is set),
+     * so opaque rectangles and markers are written directly into the pixels
+     * of the image.
+     */
+    protected boolean rasterRendering;
+
+    /**
+     * Listeners notified as each {@link Chart_RenderStage} completes and when
+     * rendering is complete.
+     */
+    protected final List<Chart_EventListener> listeners
+            = new CopyOnWriteArrayList<>();
+
+    /**
+     * A count of the primitives (lines, rectangles, strings and markers)
+     * drawn.
+     */
+    protected long primitiveCount;
+
+    /**
+     * Admits {@link #run()} only while the memory it is estimated to need
+     * fits a heap budget. If {@code null} then
+     * {@link Chart_MemoryAdmission#getShared()} is used.
+     */
+    protected Chart_MemoryAdmission admission;
+
+    /**
+     * If not {@code null} then images are acquired from this pool and
+     * returned to it once written by {@link #run()},
+     * {@link #renderAndWrite()} or a {@link Chart_Pipeline}. The images of
+     * their results are then {@code null}.
+     */
+    protected Chart_ImagePool imagePool;
+
+    /**
+     * The layout last measured by {@link #layout()}.
+     */
+    protected Chart_Layout layout;
+
+    /**
+     * Set while {@link #measure()} is drawing to a
+     * {@link Chart_MeasureRenderTarget}.
+     */
+    protected boolean measuring;
+
     protected transient ExecutorService executorService;
     public Chart_Canvas Canvas;
-    public Future<?> future;
+
+    /**
+     * Set by {@link #run()} and completed once the image is written.
+     */
+    public CompletableFuture<Chart_RenderService.Result> future;
 
     public Chart(Generic_Environment e) {
         this(e, 0);
@@ -254,12 +458,14 @@ public abstract class Chart extends Chart_Runnable
         vis = new Generic_Visualisation(e);
     }
 
+    /**
+     * @return {@link #executorService} or if that is {@code null} the
+     * executor of {@link Chart_RenderService#getShared()}, so charts share a
+     * pool of threads rather than each having its own.
+     */
     protected ExecutorService getExecutorService() {
         if (executorService == null) {
-            //executorService = Executors.newFixedThreadPool(6);
-            // The advantage of the Single ThreadExecutor is that it's queue is 
-            // effectively unlimited.
-            executorService = Executors.newSingleThreadExecutor();
+            return Chart_RenderService.getShared().getExecutorService();
         }
         return executorService;
     }
@@ -383,6 +589,20 @@ public abstract class Chart extends Chart_Runnable
         return cellWidth;
     }
 
+    /**
+     * @return {@link #exact}.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @param exact What {@link #exact} is set to.
+     */
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
     /**
      * For initialising key variables.
      *
@@ -443,17 +663,31 @@ public abstract class Chart extends Chart_Runnable
 
     public void initFontMetrics() {
         if (fontMetrics == null) {
-            if (g2 != null) {
-                fontMetrics = g2.getFontMetrics();
-            }
             Font f = Generic_Visualisation.getDefaultFont();
-            fontMetrics = new Canvas().getFontMetrics(f);
+            fontMetrics = getTextMetrics().getFontMetrics(f);
+        }
+    }
+
+    /**
+     * @return {@link #textMetrics} or if that is {@code null}, the shared
+     * {@link Chart_TextMetrics}.
+     */
+    public Chart_TextMetrics getTextMetrics() {
+        if (textMetrics == null) {
+            return Chart_TextMetrics.getShared();
         }
+        return textMetrics;
+    }
+
+    /**
+     * @param textMetrics What {@link #textMetrics} is set to.
+     */
+    public void setTextMetrics(Chart_TextMetrics textMetrics) {
+        this.textMetrics = textMetrics;
     }
 
     public void initG2Image() {
-        bi = new BufferedImage(imageWidth, imageHeight,
-                BufferedImage.TYPE_INT_ARGB);
+        bi = newImage(imageWidth, imageHeight);
         g2image = (Graphics2D) bi.getGraphics();
         g2image.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_ON);
@@ -495,12 +729,27 @@ public abstract class Chart extends Chart_Runnable
 
     /**
      * Calculates and returns the column in the image for the data with value
-     * titleTextWidth RoundingMode roundingMode is used.
+     * x. Unless {@link #exact} is {@code true} this uses the double precision
+     * transform.
      *
      * @param x The x value.
-     * @return the column in the image for the data with value titleTextWidth
+     * @return the column in the image for the data with value x.
      */
     public int getCol(BigRational x) {
+        if (exact) {
+            return getColExact(x);
+        }
+        return getCol(x.toDouble());
+    }
+
+    /**
+     * Calculates and returns the column in the image for the data with value
+     * x using BigRational arithmetic.
+     *
+     * @param x The x value.
+     * @return the column in the image for the data with value x.
+     */
+    public int getColExact(BigRational x) {
         int col = 0;
         BigRational cw = getCellWidth();
         if (data.minX != null) {
@@ -512,13 +761,47 @@ public abstract class Chart extends Chart_Runnable
         return col;
     }
 
+    /**
+     * Calculates and returns the column in the image for the data with value
+     * x. Unless {@link #exact} is {@code true} this uses the double precision
+     * transform set up in {@link #setCellWidth()}, which gives the same
+     * column as {@link #getColExact(BigRational)} other than for x within
+     * {@link #SNAP_TOLERANCE} of a column boundary (see
+     * {@link #truncate(double)}).
+     *
+     * @param x The x value.
+     * @return the column in the image for the data with value x.
+     */
+    public int getCol(double x) {
+        if (exact) {
+            return getColExact(BigRational.valueOf(x));
+        }
+        return truncate((x - xOrigin) * xScale) + dataStartCol;
+    }
+
     /**
      * Calculates and returns the row in the image for the data with value y.
+     * Unless {@link #exact} is {@code true} this uses the double precision
+     * transform.
      *
      * @param y The y value.
      * @return the row in the image for the data with value y
      */
     public int getRow(BigRational y) {
+        if (exact) {
+            return getRowExact(y);
+        }
+        return getRow(y.toDouble());
+    }
+
+    /**
+     * Calculates and returns the row in the image for the data with value y
+     * using BigRational arithmetic.
+     *
+     * @param y The y value.
+     * @return the row in the image for the data with value y
+     */
+    public int getRowExact(BigRational y) {
         int row = 0;
         BigRational ch = getCellHeight();
         if (data.minY != null) {
@@ -533,6 +816,108 @@ public abstract class Chart extends Chart_Runnable
         return row;
     }
 
+    /**
+     * Calculates and returns the row in the image for the data with value y.
+     * Unless {@link #exact} is {@code true} this uses the double precision
+     * transform set up in {@link #setCellHeight()}, which gives the same row
+     * as {@link #getRowExact(BigRational)} other than for y within
+     * {@link #SNAP_TOLERANCE} of a row boundary (see
+     * {@link #truncate(double)}).
+     *
+     * @param y The y value.
+     * @return the row in the image for the data with value y
+     */
+    public int getRow(double y) {
+        if (exact) {
+            return getRowExact(BigRational.valueOf(y));
+        }
+        if (yScale == 0d) {
+            return dataStartRow;
+        }
+        return getDataHeight() - truncate((y - yOrigin) * yScale)
+                + dataStartRow;
+    }
+
+    /**
+     * The tolerance, relative to the magnitude of a column or row (but at
+     * least 1), within which a column or row calculated in double precision
+     * is taken to be the integer it is near.
+     */
+    public static final double SNAP_TOLERANCE = 1e-9;
+
+    /**
+     * Truncates v towards zero as the exact calculations of columns and rows
+     * do, except that if v is within {@link #SNAP_TOLERANCE} of an integer it
+     * is taken to be that integer. This corrects the rounding in the double
+     * precision transform, which would otherwise put a value on the boundary
+     * of a cell, such as the maximum x, into the cell before. The result only
+     * differs from the exact calculation for values within the tolerance of
+     * a cell boundary.
+     *
+     * @param v The column or row as a double.
+     * @return The column or row.
+     */
+    protected static int truncate(double v) {
+        double r = Math.rint(v);
+        if (Math.abs(v - r) <= SNAP_TOLERANCE * Math.max(1d, Math.abs(v))) {
+            return (int) r;
+        }
+        return (int) v;
+    }
+
+    /**
+     * Calculates the columns and rows in the image for the data at
+     * coordinates xs[i], ys[i] for i in [0, xs.length).
+     *
+     * @param xs The x values.
+     * @param ys The y values.
+     * @param cols The array into which the columns are written. This must be
+     * at least as long as xs.
+     * @param rows The array into which the rows are written. This must be at
+     * least as long as xs.
+     */
+    public void toScreen(double[] xs, double[] ys, int[] cols, int[] rows) {
+        toScreen(xs, ys, cols, rows, xs.length);
+    }
+
+    /**
+     * Calculates the columns and rows in the image for the data at
+     * coordinates xs[i], ys[i] for i in [0, n).
+     *
+     * @param xs The x values.
+     * @param ys The y values.
+     * @param cols The array into which the columns are written.
+     * @param rows The array into which the rows are written.
+     * @param n The number of coordinates to transform.
+     */
+    public void toScreen(double[] xs, double[] ys, int[] cols, int[] rows,
+            int n) {
+        if (exact) {
+            for (int i = 0; i < n; i++) {
+                cols[i] = getCol(xs[i]);
+                rows[i] = getRow(ys[i]);
+            }
+            return;
+        }
+        int dsc = dataStartCol;
+        int dsr = dataStartRow;
+        int dh = getDataHeight();
+        double xo = xOrigin;
+        double sx = xScale;
+        double yo = yOrigin;
+        double sy = yScale;
+        for (int i = 0; i < n; i++) {
+            cols[i] = truncate((xs[i] - xo) * sx) + dsc;
+        }
+        if (sy == 0d) {
+            Arrays.fill(rows, 0, n, dsr);
+        } else {
+            for (int i = 0; i < n; i++) {
+                rows[i] = dh - truncate((ys[i] - yo) * sy) + dsr;
+            }
+        }
+    }
+
     /**
      * Calculates and returns the row and column in the image for the data at
      * coordinate x, y as a Point2D.Double.
@@ -549,19 +934,43 @@ public abstract class Chart extends Chart_Runnable
         return r;
     }
 
+    /**
+     * Sets {@link #cellHeight} and the double precision transform used by
+     * {@link #getRow(double)}.
+     */
     public void setCellHeight() {
         if (data.minY == null) {
             cellHeight = BigRational.valueOf(2);
+            yOrigin = 0d;
+            yScale = 0d;
         } else {
             cellHeight = data.maxY.subtract(data.minY).divide(BigRational.valueOf(getDataHeight()));
+            yOrigin = data.minY.toDouble();
+            if (cellHeight.compareTo(BigRational.ZERO) == 0) {
+                yScale = 0d;
+            } else {
+                yScale = BigRational.ONE.divide(cellHeight).toDouble();
+            }
         }
     }
 
+    /**
+     * Sets {@link #cellWidth} and the double precision transform used by
+     * {@link #getCol(double)}.
+     */
     public void setCellWidth() {
         if (data.minX == null) {
             cellWidth = BigRational.valueOf(2);
+            xOrigin = 0d;
+            xScale = 0d;
         } else {
             cellWidth = data.maxX.subtract(data.minX).divide(BigRational.valueOf(getDataWidth()));
+            xOrigin = data.minX.toDouble();
+            if (cellWidth.compareTo(BigRational.ZERO) == 0) {
+                xScale = 0d;
+            } else {
+                xScale = BigRational.ONE.divide(cellWidth).toDouble();
+            }
         }
     }
 
@@ -630,103 +1039,479 @@ public abstract class Chart extends Chart_Runnable
 //            this.legendHeight = height;
 //        }
 //    }
-    public void setPaint(Color c) {
-//        g2.setPaint(c);
-//        g2image.setPaint(c);
-        if (g2 != null) {
-            g2.setPaint(c);
+    /**
+     * @return {@link #renderTarget} if it is set, otherwise a target for
+     * {@link #g2} if that is set, otherwise a target for {@link #g2image}. If
+     * both {@link #g2} and {@link #g2image} are set and {@link #fanOut} is
+     * {@code true} then the target renders to both. This returns {@code null}
+     * if there is nothing to render to.
+     */
+    public Chart_RenderTarget getRenderTarget() {
+        if (renderTarget != null) {
+            return renderTarget;
         }
-        if (g2image != null) {
-            g2image.setPaint(c);
+        if (g2 != targetG2 || g2image != targetG2image
+                || fanOut != targetFanOut) {
+            targetG2 = g2;
+            targetG2image = g2image;
+            targetFanOut = fanOut;
+            if (g2 != null && g2image != null && fanOut) {
+                defaultTarget = new Chart_FanOutRenderTarget(
+                        new Chart_Graphics2DRenderTarget(g2),
+                        new Chart_Graphics2DRenderTarget(g2image));
+            } else if (g2 != null) {
+                defaultTarget = new Chart_Graphics2DRenderTarget(g2);
+            } else if (g2image != null) {
+                defaultTarget = new Chart_Graphics2DRenderTarget(g2image);
+            } else {
+                defaultTarget = null;
+            }
         }
+        return defaultTarget;
     }
 
-    public void draw(Line2D line) {
-//        g2.draw(line);
-//        g2image.draw(line);
-        if (g2 != null) {
-            g2.draw(line);
+    /**
+     * @param renderTarget What {@link #renderTarget} is set to.
+     */
+    public void setRenderTarget(Chart_RenderTarget renderTarget) {
+        this.renderTarget = renderTarget;
+    }
+
+    /**
+     * @return {@link #fanOut}.
+     */
+    public boolean isFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * @param fanOut What {@link #fanOut} is set to.
+     */
+    public void setFanOut(boolean fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    public void setPaint(Color c) {
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            t.setPaint(c);
         }
-        if (g2image != null) {
-            g2image.draw(line);
+    }
+
+    public void draw(Line2D line) {
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            primitiveCount++;
+            t.draw(line);
         }
     }
 
+    /**
+     * Draws point as an x cross without creating any objects.
+     *
+     * @param point The point.
+     */
     public void draw(Point2D point) {
-//        // draw as a line with zero length
-//        draw(new Line2D.Double(point, point));
-        // draw as an x cross
-        int crossLength = 4;
-        Point2D a = new Point2D.Double((int) point.getX() - crossLength,
-                (int) point.getY() - crossLength);
-        Point2D b = new Point2D.Double((int) point.getX() + crossLength,
-                (int) point.getY() + crossLength);
-        draw(new Line2D.Double(a, b));
-        Point2D c = new Point2D.Double((int) point.getX() - crossLength,
-                (int) point.getY() + crossLength);
-        Point2D d = new Point2D.Double((int) point.getX() + crossLength,
-                (int) point.getY() - crossLength);
-        draw(new Line2D.Double(c, d));
-//        // draw as an x cross
-//        double crossLength = 1.0d;
-//        Point2D a = new Point2D.Double(
-//                point.getX() - crossLength, 
-//                point.getY() - crossLength);
-//        Point2D b = new Point2D.Double(
-//                point.getX() + crossLength, 
-//                point.getY() + crossLength);
-//        draw(new Line2D.Double(a, b));
-//        Point2D c = new Point2D.Double(
-//                point.getX() - crossLength,
-//                point.getY() + crossLength);
-//        Point2D d = new Point2D.Double(
-//                point.getX() + crossLength,
-//                point.getY() - crossLength);
-//        draw(new Line2D.Double(c, d));
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            primitiveCount++;
+            int crossLength = 4;
+            int x = (int) point.getX();
+            int y = (int) point.getY();
+            Line2D.Double l = markerLine;
+            l.setLine(x - crossLength, y - crossLength, x + crossLength,
+                    y + crossLength);
+            t.draw(l);
+            l.setLine(x - crossLength, y + crossLength, x + crossLength,
+                    y - crossLength);
+            t.draw(l);
+        }
     }
 
-    public void drawString(String text, int col, int row) {
-        if (g2 != null) {
-            g2.drawString(text, col, row);
+    /**
+     * Draws a marker at each of n pixel locations. The markers are
+     * accumulated into a reused path which is rendered once for every
+     * {@link #MARKER_BATCH_SIZE} markers, so nothing is created per marker.
+     * If the render target is a {@link Chart_RasterRenderTarget} that can
+     * write directly, the markers are instead written into its pixels and
+     * clipped as they would be if drawn with {@link #g2}.
+     *
+     * @param cols The columns of the markers.
+     * @param rows The rows of the markers.
+     * @param n The number of markers to draw.
+     * @param marker The shape of marker.
+     * @param size The distance in pixels from the centre to the edge of each
+     * marker.
+     */
+    public void drawMarkers(int[] cols, int[] rows, int n, Chart_Marker marker,
+            int size) {
+        Chart_RenderTarget t = getRenderTarget();
+        if (t == null) {
+            return;
+        }
+        primitiveCount += n;
+        Chart_RasterRenderTarget r = getDirectTarget(t);
+        if (r != null) {
+            if (isTiled(n)) {
+                drawMarkersTiled(r, cols, rows, n, marker, size);
+            } else {
+                r.drawMarkers(cols, rows, n, marker, size);
+            }
+            r.clearClip();
+            return;
+        }
+        Path2D.Double p = getMarkerPath();
+        p.reset();
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            appendMarker(p, cols[i], rows[i], marker, size);
+            k++;
+            if (k == MARKER_BATCH_SIZE) {
+                renderMarkers(t, p, marker);
+                k = 0;
+            }
+        }
+        if (k > 0) {
+            renderMarkers(t, p, marker);
+        }
+    }
+
+    /**
+     * Draws a marker at each of n data coordinates. This is as
+     * {@link #drawMarkers(int[], int[], int, Chart_Marker, int)}, but the
+     * columns and rows are calculated using {@link #getCol(double)} and
+     * {@link #getRow(double)}.
+     *
+     * @param xs The x values of the markers.
+     * @param ys The y values of the markers.
+     * @param n The number of markers to draw.
+     * @param marker The shape of marker.
+     * @param size The distance in pixels from the centre to the edge of each
+     * marker.
+     */
+    public void drawMarkers(double[] xs, double[] ys, int n,
+            Chart_Marker marker, int size) {
+        Chart_RenderTarget t = getRenderTarget();
+        if (t == null) {
+            return;
+        }
+        primitiveCount += n;
+        Chart_RasterRenderTarget r = getDirectTarget(t);
+        if (r != null) {
+            if (isTiled(n)) {
+                if (tileCols == null || tileCols.length < n) {
+                    tileCols = new int[n];
+                    tileRows = new int[n];
+                }
+                int[] cols = tileCols;
+                int[] rows = tileRows;
+                int chunk = MARKER_BATCH_SIZE;
+                IntStream.range(0, (n + chunk - 1) / chunk).parallel()
+                        .forEach(c -> {
+                            int end = Math.min(n, (c + 1) * chunk);
+                            for (int i = c * chunk; i < end; i++) {
+                                cols[i] = getCol(xs[i]);
+                                rows[i] = getRow(ys[i]);
+                            }
+                        });
+                drawMarkersTiled(r, cols, rows, n, marker, size);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    r.drawMarker(getCol(xs[i]), getRow(ys[i]), marker, size);
+                }
+            }
+            r.clearClip();
+            return;
         }
-        if (g2image != null) {
-            g2image.drawString(text, col, row);
+        Path2D.Double p = getMarkerPath();
+        p.reset();
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            appendMarker(p, getCol(xs[i]), getRow(ys[i]), marker, size);
+            k++;
+            if (k == MARKER_BATCH_SIZE) {
+                renderMarkers(t, p, marker);
+                k = 0;
+            }
+        }
+        if (k > 0) {
+            renderMarkers(t, p, marker);
+        }
+    }
+
+    /**
+     * Draws lines joining n pixel locations in order. The lines are
+     * accumulated into a reused path which is stroked once for every
+     * {@link #LINE_BATCH_SIZE} lines, so there is one call to the render
+     * target rather than one for each line and nothing is created per line.
+     *
+     * @param cols The columns of the points.
+     * @param rows The rows of the points.
+     * @param n The number of points.
+     */
+    public void drawLines(int[] cols, int[] rows, int n) {
+        Chart_RenderTarget t = getRenderTarget();
+        if (t == null || n < 2) {
+            return;
+        }
+        primitiveCount += n - 1;
+        Path2D.Double p = getLinePath();
+        p.reset();
+        p.moveTo(cols[0], rows[0]);
+        int k = 0;
+        for (int i = 1; i < n; i++) {
+            p.lineTo(cols[i], rows[i]);
+            k++;
+            if (k == LINE_BATCH_SIZE && i < n - 1) {
+                t.draw(p);
+                p.reset();
+                p.moveTo(cols[i], rows[i]);
+                k = 0;
+            }
+        }
+        t.draw(p);
+        p.reset();
+    }
+
+    /**
+     * @param n The number of markers to draw.
+     * @return {@code true} if n markers are to be rasterised in tiles.
+     */
+    private boolean isTiled(int n) {
+        return tiles > 1 && n >= TILED_MIN_MARKERS;
+    }
+
+    /**
+     * Rasterises markers in parallel by dividing the rows of the clip of r
+     * into {@link #tiles} bands. Each band is drawn by one task which writes
+     * only the markers, or parts of markers, within its rows. As the bands do
+     * not overlap and every marker is written in the same colour, the result
+     * is the same as drawing the markers serially. The indexes of the markers
+     * are first grouped by the bands they overlap, with a counting pass and
+     * a prefix sum, so each task only visits its own markers.
+     *
+     * @param r The target to write to.
+     * @param cols The columns of the markers.
+     * @param rows The rows of the markers.
+     * @param n The number of markers.
+     * @param marker The shape of marker.
+     * @param size The distance in pixels from the centre to the edge of each
+     * marker.
+     */
+    private void drawMarkersTiled(Chart_RasterRenderTarget r, int[] cols,
+            int[] rows, int n, Chart_Marker marker, int size) {
+        int top = r.getMinRow();
+        int bottom = r.getMaxRow();
+        int tileHeight = (bottom - top + tiles) / tiles;
+        // starts[i] to starts[i + 1] will be the indexes for band i.
+        int[] starts = new int[tiles + 1];
+        long total = 0;
+        for (int j = 0; j < n; j++) {
+            int row = rows[j];
+            if (row < top - size || row > bottom + size) {
+                continue;
+            }
+            int first = Math.max(0, row - size - top) / tileHeight;
+            int last = Math.min(bottom - top, row + size - top) / tileHeight;
+            for (int i = first; i <= last; i++) {
+                starts[i + 1]++;
+            }
+            total += last - first + 1;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many markers " + total);
+        }
+        for (int i = 0; i < tiles; i++) {
+            starts[i + 1] += starts[i];
+        }
+        if (tileIndexes == null || tileIndexes.length < total) {
+            tileIndexes = new int[(int) total];
+        }
+        int[] indexes = tileIndexes;
+        int[] next = Arrays.copyOf(starts, tiles);
+        for (int j = 0; j < n; j++) {
+            int row = rows[j];
+            if (row < top - size || row > bottom + size) {
+                continue;
+            }
+            int first = Math.max(0, row - size - top) / tileHeight;
+            int last = Math.min(bottom - top, row + size - top) / tileHeight;
+            for (int i = first; i <= last; i++) {
+                indexes[next[i]++] = j;
+            }
+        }
+        IntStream.range(0, tiles).parallel().forEach(i -> {
+            if (starts[i] == starts[i + 1]) {
+                return;
+            }
+            int minRow = top + i * tileHeight;
+            int maxRow = Math.min(bottom, minRow + tileHeight - 1);
+            Chart_RasterRenderTarget tile = r.getTile(minRow, maxRow);
+            for (int k = starts[i]; k < starts[i + 1]; k++) {
+                int j = indexes[k];
+                tile.drawMarker(cols[j], rows[j], marker, size);
+            }
+        });
+    }
+
+    /**
+     * @return {@link #tiles}.
+     */
+    public int getTiles() {
+        return tiles;
+    }
+
+    /**
+     * @param tiles What {@link #tiles} is set to.
+     */
+    public void setTiles(int tiles) {
+        this.tiles = tiles;
+    }
+
+    /**
+     * @param t The render target.
+     * @return t as a {@link Chart_RasterRenderTarget} clipped as
+     * {@link #g2} is if it can write directly, otherwise {@code null}. This
+     * way markers are clipped the same whether they are written directly or
+     * drawn with {@link #g2}.
+     */
+    private Chart_RasterRenderTarget getDirectTarget(Chart_RenderTarget t) {
+        if (t instanceof Chart_RasterRenderTarget r && r.isDirect()
+                && r.clipToGraphics()) {
+            return r;
+        }
+        return null;
+    }
+
+    /**
+     * @return {@link #markerPath} initialising it first if it is null.
+     */
+    private Path2D.Double getMarkerPath() {
+        if (markerPath == null) {
+            markerPath = new Path2D.Double(Path2D.WIND_NON_ZERO,
+                    MARKER_BATCH_SIZE * 5);
+        }
+        return markerPath;
+    }
+
+    /**
+     * @return {@link #linePath} initialising it first if it is null.
+     */
+    private Path2D.Double getLinePath() {
+        if (linePath == null) {
+            linePath = new Path2D.Double(Path2D.WIND_NON_ZERO, 1024);
+        }
+        return linePath;
+    }
+
+    /**
+     * Renders and then resets p.
+     */
+    private static void renderMarkers(Chart_RenderTarget t, Path2D.Double p,
+            Chart_Marker marker) {
+        if (marker == Chart_Marker.DOT) {
+            t.fill(p);
+        } else {
+            t.draw(p);
+        }
+        p.reset();
+    }
+
+    /**
+     * Appends the outline of a marker to p.
+     *
+     * @param p The path to append to.
+     * @param c The column of the centre of the marker.
+     * @param r The row of the centre of the marker.
+     * @param marker The shape of marker.
+     * @param l The distance from the centre to the edge of the marker.
+     */
+    private static void appendMarker(Path2D.Double p, int c, int r,
+            Chart_Marker marker, int l) {
+        switch (marker) {
+            case CROSS:
+                p.moveTo(c - l, r - l);
+                p.lineTo(c + l, r + l);
+                p.moveTo(c - l, r + l);
+                p.lineTo(c + l, r - l);
+                break;
+            case PLUS:
+                p.moveTo(c, r - l);
+                p.lineTo(c, r + l);
+                p.moveTo(c + l, r);
+                p.lineTo(c - l, r);
+                break;
+            case DOT:
+                p.moveTo(c, r);
+                p.lineTo(c + 1, r);
+                p.lineTo(c + 1, r + 1);
+                p.lineTo(c, r + 1);
+                p.closePath();
+                break;
+            default:
+                p.moveTo(c - l, r - l);
+                p.lineTo(c + l, r - l);
+                p.lineTo(c + l, r + l);
+                p.lineTo(c - l, r + l);
+                p.closePath();
+        }
+    }
+
+    public void drawString(String text, int col, int row) {
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            primitiveCount++;
+            t.drawString(text, col, row);
         }
     }
 
     public void fillRect(int col, int row, int width, int height) {
-        if (g2 != null) {
-            g2.fillRect(col, row, width, height);
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            primitiveCount++;
+            t.fillRect(col, row, width, height);
         }
-        if (g2image != null) {
-            g2image.fillRect(col, row, width, height);
+    }
+
+    /**
+     * Fills the part of a rectangle that is within the data area, that is
+     * columns {@link #dataStartCol} to {@link #dataEndCol} and rows
+     * {@link #dataStartRow} to {@link #dataEndRow} inclusive.
+     *
+     * @param col The left column.
+     * @param row The top row.
+     * @param width The width.
+     * @param height The height.
+     */
+    public void fillDataRect(int col, int row, int width, int height) {
+        int c0 = Math.max(col, dataStartCol);
+        int r0 = Math.max(row, dataStartRow);
+        int c1 = Math.min(col + width, dataEndCol + 1);
+        int r1 = Math.min(row + height, dataEndRow + 1);
+        if (c0 < c1 && r0 < r1) {
+            fillRect(c0, r0, c1 - c0, r1 - r0);
         }
     }
 
     public void draw(Rectangle2D aRectangle2D) {
-        if (g2 != null) {
-            g2.draw(aRectangle2D);
-        }
-        if (g2image != null) {
-            g2image.draw(aRectangle2D);
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            primitiveCount++;
+            t.draw(aRectangle2D);
         }
     }
 
     public void transform(AffineTransform aAffineTransform) {
-        if (g2 != null) {
-            g2.transform(aAffineTransform);
-        }
-        if (g2image != null) {
-            g2image.transform(aAffineTransform);
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            t.transform(aAffineTransform);
         }
     }
 
     public void setTransform(AffineTransform aAffineTransform) {
-        if (g2 != null) {
-            g2.setTransform(aAffineTransform);
-        }
-        if (g2image != null) {
-            g2image.setTransform(aAffineTransform);
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            t.setTransform(aAffineTransform);
         }
     }
 
@@ -1023,10 +1808,16 @@ public abstract class Chart extends Chart_Runnable
 //        System.out.println("imageHeight " + imageHeight);
     }
 
+    /**
+     * @param text The text.
+     * @return The width of text measured with {@link #fontMetrics}, cached
+     * by {@link #getTextMetrics()}.
+     */
     public int getTextWidth(String text) {
-        char[] c = text.toCharArray();
-        int r = fontMetrics.charsWidth(c, 0, c.length);
-        return r;
+        if (fontMetrics == null) {
+            initFontMetrics();
+        }
+        return getTextMetrics().getWidth(fontMetrics, text);
     }
 
     public int getTextHeight() {
@@ -1040,8 +1831,9 @@ public abstract class Chart extends Chart_Runnable
             int startRow) {
         // Store the current transform to return the graphics environment to
         AffineTransform currentTransform = null;
-        if (g2 != null) {
-            currentTransform = g2.getTransform();
+        Chart_RenderTarget t = getRenderTarget();
+        if (t != null) {
+            currentTransform = t.getTransform();
         }
         AffineTransform newTransform = AffineTransform.getRotateInstance(
                 angle, startCol, startRow);
@@ -1055,14 +1847,95 @@ public abstract class Chart extends Chart_Runnable
 
     @Override
     public Dimension draw() {
-        drawOutline();
-        drawTitle(title);
-        drawAxes();
-        drawData();
+        stage(Chart_RenderStage.OUTLINE, this::drawOutline);
+        stage(Chart_RenderStage.TITLE, () -> drawTitle(title));
+        stage(Chart_RenderStage.AXES, this::drawAxes);
+        stage(Chart_RenderStage.DATA, this::drawData);
         Dimension newDim = new Dimension(imageWidth, imageHeight);
         return newDim;
     }
 
+    /**
+     * Runs a stage of drawing. If there are {@link #listeners} they are
+     * notified of the time it took and the number of primitives drawn. If a
+     * flight recording is on then a {@link Chart_JfrStageEvent} is recorded.
+     *
+     * @param stage The stage.
+     * @param r What draws the stage.
+     */
+    protected void stage(Chart_RenderStage stage, Runnable r) {
+        if (measuring) {
+            if (stage != Chart_RenderStage.DATA || isLayoutDataDependent()) {
+                r.run();
+            }
+            return;
+        }
+        Chart_JfrStageEvent j = new Chart_JfrStageEvent();
+        if (listeners.isEmpty() && !j.isEnabled()) {
+            r.run();
+            return;
+        }
+        long p0 = primitiveCount;
+        long t0 = System.nanoTime();
+        j.begin();
+        r.run();
+        long nanos = System.nanoTime() - t0;
+        if (j.shouldCommit()) {
+            j.stage = stage.name();
+            j.primitives = primitiveCount - p0;
+            setChart(j, imageWidth, imageHeight);
+            j.commit();
+        }
+        fireStageComplete(stage, nanos, primitiveCount - p0, imageWidth,
+                imageHeight, 0);
+    }
+
+    /**
+     * Sets the chart fields of a flight recorder event. This should only be
+     * called if {@code e.shouldCommit()} as it may count the data points.
+     *
+     * @param e The event.
+     * @param width The image width.
+     * @param height The image height.
+     */
+    protected void setChart(Chart_JfrEvent e, int width, int height) {
+        Chart_Data d = getData();
+        e.setChart(getClass(), title, width, height,
+                d == null ? -1L : d.getPointCount(), format);
+    }
+
+    /**
+     * @param l The listener to add to {@link #listeners}.
+     */
+    public void addEventListener(Chart_EventListener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * @param l The listener to remove from {@link #listeners}.
+     */
+    public void removeEventListener(Chart_EventListener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * @return {@link #primitiveCount}.
+     */
+    public long getPrimitiveCount() {
+        return primitiveCount;
+    }
+
+    private void fireStageComplete(Chart_RenderStage stage, long nanos,
+            long primitives, int width, int height, long bytes) {
+        if (!listeners.isEmpty()) {
+            Chart_RenderStageEvent e = new Chart_RenderStageEvent(this, stage,
+                    nanos, primitives, width, height, bytes);
+            for (Chart_EventListener l : listeners) {
+                l.stageComplete(e);
+            }
+        }
+    }
+
     public abstract void drawData();
 
     @Override
@@ -1072,100 +1945,588 @@ public abstract class Chart extends Chart_Runnable
     }
 
     /**
+     * Draws the chart directly onto an in memory image. The image is sized
+     * from the {@link #layout()} so the chart is drawn once at its final size.
+     * If drawing still enlarges the layout (as a subclass that grows its
+     * layout in {@link #drawData()} without saying so in
+     * {@link #isLayoutDataDependent()} might) then the chart is drawn once
+     * more at the final size.
      *
+     * @return The rendered image which is also set as {@link #bi}.
      */
-    @Override
-    public void run() {
+    public BufferedImage render() {
+        Chart_JfrRenderEvent j = new Chart_JfrRenderEvent();
+        j.begin();
+        Chart_Layout l = layout();
+        int w = l.getImageWidth();
+        int h = l.getImageHeight();
+        BufferedImage image = newImage(w, h);
+        Dimension d = drawImage(image);
+        if (d.width > w || d.height > h) {
+            layout = null;
+            recycle(image);
+            image = newImage(d.width, d.height);
+            drawImage(image);
+        }
+        setBi(image);
+        if (j.shouldCommit()) {
+            setChart(j, image.getWidth(), image.getHeight());
+            j.commit();
+        }
+        return image;
+    }
+
+    /**
+     * Returns the layout the chart is drawn with. If {@link #layout} is for
+     * {@link #getLayoutKey()} then it is applied and returned, otherwise the
+     * layout is measured with {@link #measure()} and kept as {@link #layout}.
+     *
+     * @return The layout.
+     */
+    public Chart_Layout layout() {
+        List<Object> key = getLayoutKey();
+        if (layout != null && layout.isFor(key)) {
+            layout.applyTo(this);
+            return layout;
+        }
+        layout = measure();
+        return layout;
+    }
+
+    /**
+     * Measures the layout by drawing the chart to a
+     * {@link Chart_MeasureRenderTarget}, which draws nothing. The title, axes
+     * and legend are measured as they are drawn and enlarge the layout as they
+     * would otherwise. Data is only drawn if
+     * {@link #isLayoutDataDependent()}.
+     *
+     * @return The measured layout.
+     */
+    public Chart_Layout measure() {
+        long p0 = primitiveCount;
+        Chart_RenderTarget explicit = renderTarget;
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+                .createGraphics();
+        renderTarget = new Chart_MeasureRenderTarget();
+        measuring = true;
         try {
-            Canvas = new Chart_Canvas();
-            Canvas.Plot = this;
-            Canvas.rect = new Rectangle(0, 0, getDataWidth(), getDataHeight());
-            //            Graphics2D g2 = (Graphics2D) Canvas.getGraphics();
-            //            setG2(g2);
-            //            //Canvas.paint(g2);
-            //            Dimension dim = draw();
-            //            Canvas.setDimension(dim);
-            PrinterJob pj = PrinterJob.getPrinterJob();
-            Chart_Printable printable = new Chart_Printable(Canvas);
-            pj.setPrintable(printable);
-            String psMimeType = "application/postscript";
-            FileOutputStream fos = null;
-            //        PrintService[] printServices = PrinterJob.lookupPrintServices();
-            StreamPrintService streamPrintService = null;
-            StreamPrintServiceFactory[] spsf;
-            spsf = PrinterJob.lookupStreamPrintServices(psMimeType);
-            Path dir = file.getParent();
+            draw(g);
+        } finally {
+            measuring = false;
+            renderTarget = explicit;
+            primitiveCount = p0;
+            g.dispose();
+            g2 = null;
+        }
+        return new Chart_Layout(this, getLayoutKey());
+    }
+
+    /**
+     * What the layout depends on. While this is equal a layout can be reused
+     * by {@link #layout()}, so it can be reused as data values change provided
+     * the range of them does not. Subclasses with other settings that change
+     * the layout should add them.
+     *
+     * @return The class, title, axis labels, data area size and data range,
+     * or {@code null} if {@link #isLayoutDataDependent()} in which case the
+     * layout is not reused.
+     */
+    public List<Object> getLayoutKey() {
+        if (isLayoutDataDependent()) {
+            return null;
+        }
+        Chart_Data d = getData();
+        return Arrays.asList(getClass(), title, xAxisLabel, yAxisLabel,
+                dataWidth, dataHeight,
+                d == null ? null : d.minX, d == null ? null : d.maxX,
+                d == null ? null : d.minY, d == null ? null : d.maxY);
+    }
+
+    /**
+     * @return {@code true} if {@link #drawData()} changes the layout, for
+     * instance if it draws a legend, so that it has to be drawn to measure
+     * the layout. By default this is {@code false}.
+     */
+    protected boolean isLayoutDataDependent() {
+        return false;
+    }
+
+    /**
+     * @param image The image to draw on.
+     * @return The dimensions returned from {@link #draw(Graphics2D)}.
+     */
+    private Dimension drawImage(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        Chart_RenderTarget explicit = renderTarget;
+        if (explicit == null && rasterRendering
+                && Chart_RasterRenderTarget.isSupported(image)) {
+            renderTarget = new Chart_RasterRenderTarget(image, g);
+        }
+        try {
+            return draw(g);
+        } finally {
+            renderTarget = explicit;
+            g.dispose();
+            g2 = null;
+        }
+    }
+
+    /**
+     * Encodes image in {@link #format} and writes it to {@link #file}. If
+     * there are {@link #listeners} they are notified of the time taken for
+     * each.
+     *
+     * @param image The image to write.
+     * @return The number of bytes written.
+     * @throws IOException If there is no encoder for {@link #format} or if
+     * encountered writing.
+     */
+    public long write(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bos = encode(image);
+        writeEncoded(image, bos);
+        return bos.size();
+    }
+
+    /**
+     * Encodes image in {@link #format}. PNG formats, which may have options
+     * such as {@code "PNG:fast"} or {@code "PNG:small"}, are encoded with a
+     * {@link Chart_PngEncoder} and other formats with ImageIO. If there are
+     * {@link #listeners} they are notified of the time taken. If a flight
+     * recording is on then a {@link Chart_JfrStageEvent} is recorded.
+     *
+     * @param image The image to encode.
+     * @return The encoded image.
+     * @throws IOException If there is no encoder for {@link #format}.
+     */
+    public ByteArrayOutputStream encode(BufferedImage image)
+            throws IOException {
+        Chart_JfrStageEvent j = new Chart_JfrStageEvent();
+        j.begin();
+        long t0 = System.nanoTime();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        if (Chart_PngEncoder.isPng(format)) {
+            Chart_PngEncoder.forFormat(format).write(image, bos);
+        } else if (!ImageIO.write(image,
+                Chart_PngEncoder.getFormatName(format), bos)) {
+            throw new IOException("No encoder for format " + format);
+        }
+        fireStageComplete(Chart_RenderStage.ENCODE, System.nanoTime() - t0, 0,
+                image.getWidth(), image.getHeight(), bos.size());
+        if (j.shouldCommit()) {
+            j.stage = Chart_RenderStage.ENCODE.name();
+            setChart(j, image.getWidth(), image.getHeight());
+            j.commit();
+        }
+        return bos;
+    }
+
+    /**
+     * Writes an encoded image to {@link #file}. If there are
+     * {@link #listeners} they are notified of the time taken. If a flight
+     * recording is on then a {@link Chart_JfrWriteEvent} is recorded.
+     *
+     * @param image The image that was encoded.
+     * @param bos The encoded image.
+     * @throws IOException If encountered writing.
+     */
+    public void writeEncoded(BufferedImage image, ByteArrayOutputStream bos)
+            throws IOException {
+        Chart_JfrWriteEvent j = new Chart_JfrWriteEvent();
+        j.begin();
+        long t0 = System.nanoTime();
+        Path dir = file.getParent();
+        if (dir != null) {
             Files.createDirectories(dir);
-            Path psFile = Paths.get(dir.toString(), file.getFileName() + ".ps");
-            System.out.println("psFile " + psFile.toString());
-            if (spsf.length > 0) {
-                try {
-                    Files.createFile(psFile);
-                    fos = new FileOutputStream(psFile.toFile());
-                    streamPrintService = spsf[0].getPrintService(fos);
-                    // streamPrintService can now be set as the service on a PrinterJob
-                } catch (IOException e) {
-                    System.err.println(e.getMessage());
-                    e.printStackTrace(System.err);
-                }
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            bos.writeTo(out);
+        }
+        fireStageComplete(Chart_RenderStage.WRITE, System.nanoTime() - t0, 0,
+                image.getWidth(), image.getHeight(), bos.size());
+        if (j.shouldCommit()) {
+            j.file = file.toString();
+            j.bytes = bos.size();
+            setChart(j, image.getWidth(), image.getHeight());
+            j.commit();
+        }
+    }
+
+    /**
+     * @return {@link #rasterRendering}.
+     */
+    public boolean isRasterRendering() {
+        return rasterRendering;
+    }
+
+    /**
+     * @param rasterRendering What {@link #rasterRendering} is set to.
+     */
+    public void setRasterRendering(boolean rasterRendering) {
+        this.rasterRendering = rasterRendering;
+    }
+
+    /**
+     * Renders the chart by printing {@link #Canvas} via a PrinterJob to a
+     * PostScript StreamPrintService. The PostScript file is written next to
+     * {@link #file} and deleted afterwards.
+     *
+     * @return The rendered image which is also set as {@link #bi}.
+     * @throws IOException If encountered.
+     */
+    public BufferedImage renderViaPrinterJob() throws IOException {
+        Chart_JfrRenderEvent j = new Chart_JfrRenderEvent();
+        j.begin();
+        Canvas = new Chart_Canvas();
+        Canvas.Plot = this;
+        Chart_Layout l = layout();
+        Canvas.rect = new Rectangle(0, 0, l.getImageWidth(),
+                l.getImageHeight());
+        PrinterJob pj = PrinterJob.getPrinterJob();
+        Chart_Printable printable = new Chart_Printable(Canvas);
+        pj.setPrintable(printable);
+        String psMimeType = "application/postscript";
+        FileOutputStream fos = null;
+        StreamPrintService streamPrintService = null;
+        StreamPrintServiceFactory[] spsf;
+        spsf = PrinterJob.lookupStreamPrintServices(psMimeType);
+        Path dir = file.getParent();
+        Files.createDirectories(dir);
+        Path psFile = Paths.get(dir.toString(), file.getFileName() + ".ps");
+        System.out.println("psFile " + psFile.toString());
+        if (spsf.length > 0) {
+            try {
+                Files.createFile(psFile);
+                fos = new FileOutputStream(psFile.toFile());
+                streamPrintService = spsf[0].getPrintService(fos);
+                // streamPrintService can now be set as the service on a PrinterJob
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                e.printStackTrace(System.err);
             }
+        }
+        try {
+            pj.setPrintService(streamPrintService);
+            PrintRequestAttributeSet pras = new HashPrintRequestAttributeSet();
+            pras.add(new Copies(1));
+            pj.print(pras);
+            setBi(Canvas.getBufferedImage());
+        } catch (PrinterException e) {
+            e.printStackTrace(System.err);
+        } finally {
             try {
-                //            PrintRequestAttributeSet pras;
-                //            PrintService printService = printerJob.getPrintService();
-                //            PrintServiceAttributeSet psas = printService.getAttributes();
-                //            System.out.println(psas.toString());
-                //            printerJob.print();
-                //            System.out.println("pj.getJobName()" + printerJob.getJobName());
-                //            System.out.println("pj.isCancelled()" + printerJob.isCancelled());
-                //            printerJob.setPrintService(printServices[0]);
-                pj.setPrintService(streamPrintService);
-                PrintRequestAttributeSet pras = new HashPrintRequestAttributeSet();
-                pras.add(new Copies(1));
-                pj.print(pras);
-                setBi(Canvas.getBufferedImage());
-                //            Rectangle r = Canvas.getBounds();
-                //            Graphics2D g2 = (Graphics2D) Canvas.getGraphics();
-                //            setG2(g2);
-                //            //Canvas.paint(g2);
-                //            Dimension dim = draw();
-                //            Canvas.setDimension(dim);
-                //Canvas.setDimension(Canvas.paintAndGetNewDimensions(g2));
-                //Canvas.rect = new Rectangle(dim);
-                //Canvas.setSize(dataWidth, dataHeight);
-                // Canvas.paint(g2);
-                long delay = 10000;
-                Generic_Visualisation v = new Generic_Visualisation(env);
-                future = v.saveImage(executorService, this, Canvas.getBufferedImage(), delay, format, file);
-                //            fileOutputStream.close();
-                //            printerJob.cancel();
-                //            psFile.delete();
-                ////            System.out.println("pj.getJobName() " + printerJob.getJobName());
-                ////            System.out.println("pj.isCancelled() " + printerJob.isCancelled());
-                //        } catch (IOException e) {
-                //            System.err.println(e.getMessage());
-                //            e.printStackTrace(System.err);
-            } catch (PrinterException e) {
+                fos.close();
+                pj.cancel();
+                Files.delete(psFile);
+            } catch (IOException e) {
                 e.printStackTrace(System.err);
+            }
+        }
+        if (j.shouldCommit() && bi != null) {
+            setChart(j, bi.getWidth(), bi.getHeight());
+            j.commit();
+        }
+        return bi;
+    }
+
+    /**
+     * @return {@link #printerJobRendering}.
+     */
+    public boolean isPrinterJobRendering() {
+        return printerJobRendering;
+    }
+
+    /**
+     * @param printerJobRendering What {@link #printerJobRendering} is set to.
+     */
+    public void setPrinterJobRendering(boolean printerJobRendering) {
+        this.printerJobRendering = printerJobRendering;
+    }
+
+    /**
+     * @return {@link #admission} or if that is {@code null}, the shared
+     * {@link Chart_MemoryAdmission}.
+     */
+    public Chart_MemoryAdmission getAdmission() {
+        if (admission == null) {
+            return Chart_MemoryAdmission.getShared();
+        }
+        return admission;
+    }
+
+    /**
+     * @param admission What {@link #admission} is set to.
+     */
+    public void setAdmission(Chart_MemoryAdmission admission) {
+        this.admission = admission;
+    }
+
+    /**
+     * @return {@link #imagePool}.
+     */
+    public Chart_ImagePool getImagePool() {
+        return imagePool;
+    }
+
+    /**
+     * @param imagePool What {@link #imagePool} is set to.
+     */
+    public void setImagePool(Chart_ImagePool imagePool) {
+        this.imagePool = imagePool;
+    }
+
+    /**
+     * @param width The width.
+     * @param height The height.
+     * @return A {@link BufferedImage#TYPE_INT_ARGB} image from
+     * {@link #imagePool} or if that is {@code null}, a new one.
+     */
+    protected BufferedImage newImage(int width, int height) {
+        if (imagePool == null) {
+            return new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+        }
+        return imagePool.acquire(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Returns image to {@link #imagePool} if there is one. If image is
+     * {@link #bi} then that is set to {@code null}.
+     *
+     * @param image The image which is not used afterwards if there is a pool.
+     * @return {@code null} if image was returned to the pool, otherwise image.
+     */
+    protected BufferedImage recycle(BufferedImage image) {
+        if (imagePool == null || image == null) {
+            return image;
+        }
+        if (bi == image) {
+            bi = null;
+        }
+        imagePool.release(image);
+        return null;
+    }
+
+    /**
+     * Estimates the number of bytes {@link #run()} needs until the image is
+     * written. This is 4 bytes per pixel for the image, as much again for the
+     * encoder buffer, {@link #MEMORY_PER_POINT} for each data point and
+     * another 4 bytes per pixel for the canvas image if
+     * {@link #printerJobRendering}. The image size is that of the
+     * {@link #layout()}, which is kept for rendering, so even the first
+     * estimate is of the image that will be rendered.
+     *
+     * @return An estimate of the number of bytes needed.
+     */
+    public long estimateMemory() {
+        Chart_Layout l = layout();
+        long pixels = (long) l.getImageWidth() * l.getImageHeight();
+        long raster = pixels * 4L;
+        long bytes = raster * 2L;
+        if (printerJobRendering) {
+            bytes += raster;
+        }
+        Chart_Data d = getData();
+        if (d != null) {
+            long n = d.getPointCount();
+            if (n > 0) {
+                bytes += n * MEMORY_PER_POINT;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Renders the chart using {@link #render()} or if
+     * {@link #printerJobRendering} is {@code true} using
+     * {@link #renderViaPrinterJob()}.
+     *
+     * @return The rendered image or {@code null} if rendering failed.
+     * @throws IOException If encountered.
+     */
+    protected BufferedImage renderImage() throws IOException {
+        if (printerJobRendering) {
+            return renderViaPrinterJob();
+        }
+        return render();
+    }
+
+    /**
+     * Writes image and notifies {@link #listeners} that rendering is
+     * complete.
+     *
+     * @param image The rendered image.
+     * @param t0 The {@link System#nanoTime()} when rendering started.
+     * @param primitives The number of primitives drawn.
+     * @return The number of bytes written.
+     * @throws IOException If encountered writing.
+     */
+    protected long complete(BufferedImage image, long t0, long primitives)
+            throws IOException {
+        long bytes = write(image);
+        fireRenderingComplete(image, t0, primitives, bytes);
+        return bytes;
+    }
+
+    /**
+     * Notifies {@link #listeners} that rendering is complete.
+     *
+     * @param image The rendered image.
+     * @param t0 The {@link System#nanoTime()} when rendering started.
+     * @param primitives The number of primitives drawn.
+     * @param bytes The number of bytes written.
+     */
+    protected void fireRenderingComplete(BufferedImage image, long t0,
+            long primitives, long bytes) {
+        if (!listeners.isEmpty()) {
+            Chart_RenderingCompleteEvent e = new Chart_RenderingCompleteEvent(
+                    this, System.nanoTime() - t0, primitives,
+                    image.getWidth(), image.getHeight(), bytes);
+            for (Chart_EventListener l : listeners) {
+                l.renderingComplete(e);
+            }
+        }
+    }
+
+    /**
+     * Renders the chart and writes it to {@link #file} in {@link #format} in
+     * the calling thread. This first waits to be admitted by
+     * {@link #getAdmission()} with the {@link #estimateMemory()}.
+     *
+     * @return The number of bytes written or {@code -1} if rendering failed.
+     * @throws IOException If encountered.
+     * @throws InterruptedException If interrupted waiting to be admitted.
+     */
+    public long renderAndWrite() throws IOException, InterruptedException {
+        Chart_MemoryAdmission a = getAdmission();
+        long memory = estimateMemory();
+        a.acquire(memory);
+        try {
+            long t0 = System.nanoTime();
+            long p0 = primitiveCount;
+            BufferedImage image = renderImage();
+            if (image == null) {
+                return -1L;
+            }
+            try {
+                return complete(image, t0, primitiveCount - p0);
             } finally {
-                //printerJob.cancel();
+                recycle(image);
+            }
+        } finally {
+            a.release(memory);
+        }
+    }
+
+    /**
+     * @return {@link #future}.
+     */
+    public CompletableFuture<Chart_RenderService.Result> getFuture() {
+        return future;
+    }
+
+    /**
+     * @param es What {@link #executorService} is set to.
+     */
+    public void setExecutorService(ExecutorService es) {
+        this.executorService = es;
+    }
+
+    /**
+     * Renders the chart and saves it to {@link #file} in {@link #format}. By
+     * default this uses {@link #render()}. If {@link #printerJobRendering} is
+     * {@code true} then {@link #renderViaPrinterJob()} is used instead. This
+     * first waits to be admitted by {@link #getAdmission()} with the
+     * {@link #estimateMemory()} which is released once the image is written.
+     * As soon as the image is rendered it is written using
+     * {@link #getExecutorService()}. Before anything else
+     * {@link #future} is set to a future that completes when the image is
+     * written, or exceptionally if estimating memory, admission, rendering,
+     * handing the write to the executor or writing fails, so further work can
+     * be chained to it. However it fails, the image is recycled and the admitted
+     * memory released once.
+     */
+    @Override
+    public void run() {
+        CompletableFuture<Chart_RenderService.Result> f
+                = new CompletableFuture<>();
+        future = f;
+        Chart_MemoryAdmission a = getAdmission();
+        long memory;
+        try {
+            memory = estimateMemory();
+            a.acquire(memory);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            f.completeExceptionally(ex);
+            return;
+        } catch (Exception | Error ex) {
+            Logger.getLogger(Chart.class.getName()).log(Level.SEVERE, null,
+                    ex);
+            f.completeExceptionally(ex);
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+            return;
+        }
+        BufferedImage image = null;
+        // Set once the write owns the image and the admitted memory.
+        boolean handedOver = false;
+        try {
+            long t0 = System.nanoTime();
+            long p0 = primitiveCount;
+            image = renderImage();
+            if (image == null) {
+                f.completeExceptionally(
+                        new IOException("Rendering " + file + " failed"));
+                return;
+            }
+            long primitives = primitiveCount - p0;
+            BufferedImage rendered = image;
+            Runnable w = () -> {
+                long bytes;
                 try {
-                    fos.close();
-                    pj.cancel();
-                    Files.delete(psFile);
-                } catch (IOException e) {
-                    e.printStackTrace(System.err);
+                    bytes = complete(rendered, t0, primitives);
+                } catch (Exception | Error ex) {
+                    Logger.getLogger(Chart.class.getName()).log(Level.SEVERE,
+                            null, ex);
+                    recycle(rendered);
+                    a.release(memory);
+                    f.completeExceptionally(ex);
+                    if (ex instanceof Error) {
+                        throw (Error) ex;
+                    }
+                    return;
                 }
+                BufferedImage kept = recycle(rendered);
+                a.release(memory);
+                f.complete(new Chart_RenderService.Result(this, kept, file,
+                        bytes));
+            };
+            Chart_JfrQueueWaitEvent q = new Chart_JfrQueueWaitEvent();
+            q.begin();
+            getExecutorService().execute(() -> {
+                if (q.shouldCommit()) {
+                    q.task = "write";
+                    setChart(q, rendered.getWidth(), rendered.getHeight());
+                    q.commit();
+                }
+                w.run();
+            });
+            handedOver = true;
+        } catch (Exception | Error ex) {
+            if (!handedOver) {
+                Logger.getLogger(Chart.class.getName()).log(Level.SEVERE,
+                        null, ex);
+                f.completeExceptionally(ex);
+            }
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+        } finally {
+            if (!handedOver) {
+                recycle(image);
+                a.release(memory);
             }
-        } catch (OutOfMemoryError e) {
-            long time;
-            //time = 60000L; // 1 minute
-            //time = 120000L;// 2 minutes
-            time = 240000L; // 4 minutes
-            Generic_Execution.waitSychronized(env, this, time); // wait a time
-            System.out.println("...on we go.");
-            run();
-        } catch (IOException ex) {
-            Logger.getLogger(Chart.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 }
@@ -72,7 +72,11 @@ public abstract class Chart_Bar extends Chart {
     @Override
     public void initialiseParameters(Chart_Data data) {
         Chart_BarData d = (Chart_BarData) data;
-        maxX = BigRational.valueOf(d.map.size()).multiply(d.intervalWidth);
+        if (d.map.isEmpty() && d.maxX != null) {
+            maxX = d.maxX;
+        } else {
+            maxX = BigRational.valueOf(d.map.size()).multiply(d.intervalWidth);
+        }
         minY = BigRational.ZERO;
         maxY = data.maxY;
         setCellHeight();
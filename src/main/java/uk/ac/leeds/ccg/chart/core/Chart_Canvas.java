@@ -56,7 +56,10 @@ public class Chart_Canvas extends Canvas {
     public void paint(Graphics g) {
 
         //Rectangle rect = getBounds();
-        bi = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_INT_ARGB);
+        if (bi != null) {
+            Plot.recycle(bi);
+        }
+        bi = Plot.newImage(rect.width, rect.height);
         g2d = (Graphics2D) bi.getGraphics();
 
 //        g2d = (Graphics2D) g;
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+
+/**
+ * A {@link Chart_RenderTarget} that renders every primitive to each of a
+ * number of targets. Each primitive is rasterised once per target, so this
+ * is only used if it is explicitly asked for (see
+ * {@link Chart#setFanOut(boolean)}).
+ */
+public class Chart_FanOutRenderTarget implements Chart_RenderTarget {
+
+    /**
+     * The targets rendered to. The first is the one whose transform is
+     * returned from {@link #getTransform()}.
+     */
+    protected final Chart_RenderTarget[] targets;
+
+    /**
+     * @param targets What {@link #targets} is set to.
+     */
+    public Chart_FanOutRenderTarget(Chart_RenderTarget... targets) {
+        this.targets = targets;
+    }
+
+    @Override
+    public void setPaint(Color c) {
+        for (Chart_RenderTarget t : targets) {
+            t.setPaint(c);
+        }
+    }
+
+    @Override
+    public void draw(Shape s) {
+        for (Chart_RenderTarget t : targets) {
+            t.draw(s);
+        }
+    }
+
+    @Override
+    public void fill(Shape s) {
+        for (Chart_RenderTarget t : targets) {
+            t.fill(s);
+        }
+    }
+
+    @Override
+    public void fillRect(int col, int row, int width, int height) {
+        for (Chart_RenderTarget t : targets) {
+            t.fillRect(col, row, width, height);
+        }
+    }
+
+    @Override
+    public void drawString(String text, int col, int row) {
+        for (Chart_RenderTarget t : targets) {
+            t.drawString(text, col, row);
+        }
+    }
+
+    @Override
+    public void transform(AffineTransform at) {
+        for (Chart_RenderTarget t : targets) {
+            t.transform(at);
+        }
+    }
+
+    @Override
+    public void setTransform(AffineTransform at) {
+        for (Chart_RenderTarget t : targets) {
+            t.setTransform(at);
+        }
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return targets[0].getTransform();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+
+/**
+ * A {@link Chart_RenderTarget} that renders to a single Graphics2D which may
+ * be that of a component or of an image.
+ */
+public class Chart_Graphics2DRenderTarget implements Chart_RenderTarget {
+
+    /**
+     * The graphics rendered to.
+     */
+    protected final Graphics2D g;
+
+    /**
+     * @param g What {@link #g} is set to.
+     */
+    public Chart_Graphics2DRenderTarget(Graphics2D g) {
+        this.g = g;
+    }
+
+    /**
+     * @return {@link #g}.
+     */
+    public Graphics2D getGraphics() {
+        return g;
+    }
+
+    @Override
+    public void setPaint(Color c) {
+        g.setPaint(c);
+    }
+
+    @Override
+    public void draw(Shape s) {
+        g.draw(s);
+    }
+
+    @Override
+    public void fill(Shape s) {
+        g.fill(s);
+    }
+
+    @Override
+    public void fillRect(int col, int row, int width, int height) {
+        g.fillRect(col, row, width, height);
+    }
+
+    @Override
+    public void drawString(String text, int col, int row) {
+        g.drawString(text, col, row);
+    }
+
+    @Override
+    public void transform(AffineTransform t) {
+        g.transform(t);
+    }
+
+    @Override
+    public void setTransform(AffineTransform t) {
+        g.setTransform(t);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return g.getTransform();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A pool of images for reuse across renders of the same size, so that large
+ * pixel arrays are not allocated and collected for each chart. Images are
+ * pooled by width, height and type. An image acquired from the pool is
+ * cleared so it is the same as a new image. The total size of the pooled
+ * images is capped; when an image is released that would exceed the cap the
+ * images of the least recently used sizes are dropped first.
+ *
+ * An image must not be used after it is released.
+ */
+public class Chart_ImagePool {
+
+    /**
+     * The default cap as a fraction of {@link Runtime#maxMemory()}.
+     */
+    public static final double DEFAULT_CAP_FRACTION = 0.125d;
+
+    /**
+     * The key of an image size and type.
+     */
+    private static class Key {
+
+        final int width;
+        final int height;
+        final int type;
+
+        Key(int width, int height, int type) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof Key k) {
+                return width == k.width && height == k.height
+                        && type == k.type;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, type);
+        }
+    }
+
+    /**
+     * The pooled images in least recently used order of their keys.
+     */
+    private final LinkedHashMap<Key, ArrayDeque<BufferedImage>> images;
+
+    /**
+     * The maximum number of bytes of pooled images.
+     */
+    private long cap;
+
+    /**
+     * The number of bytes of pooled images.
+     */
+    private long bytes;
+
+    /**
+     * Counts of acquires that reused a pooled image (hits), those that
+     * allocated a new one (misses) and pooled images dropped to keep within
+     * {@link #cap} (evictions).
+     */
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a new instance with a cap of {@link #DEFAULT_CAP_FRACTION} of
+     * {@link Runtime#maxMemory()}.
+     */
+    public Chart_ImagePool() {
+        this((long) (Runtime.getRuntime().maxMemory() * DEFAULT_CAP_FRACTION));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param cap What {@link #cap} is set to.
+     */
+    public Chart_ImagePool(long cap) {
+        images = new LinkedHashMap<>(16, 0.75f, true);
+        setCap(cap);
+    }
+
+    /**
+     * Returns a cleared pooled image or if there is none, a new one.
+     *
+     * @param width The width.
+     * @param height The height.
+     * @param type The type, e.g. {@link BufferedImage#TYPE_INT_ARGB}.
+     * @return An image.
+     */
+    public BufferedImage acquire(int width, int height, int type) {
+        BufferedImage image = null;
+        synchronized (this) {
+            ArrayDeque<BufferedImage> q = images.get(
+                    new Key(width, height, type));
+            if (q != null) {
+                image = q.pollLast();
+            }
+            if (image == null) {
+                misses++;
+            } else {
+                hits++;
+                bytes -= getBytes(image);
+            }
+        }
+        if (image == null) {
+            return new BufferedImage(width, height, type);
+        }
+        clear(image);
+        return image;
+    }
+
+    /**
+     * Returns image to the pool.
+     *
+     * @param image The image which must not be used afterwards.
+     */
+    public synchronized void release(BufferedImage image) {
+        long b = getBytes(image);
+        if (b > cap) {
+            evictions++;
+            return;
+        }
+        Key k = new Key(image.getWidth(), image.getHeight(), image.getType());
+        evict(cap - b);
+        images.computeIfAbsent(k, x -> new ArrayDeque<>()).addLast(image);
+        bytes += b;
+    }
+
+    /**
+     * Drops pooled images, least recently used sizes first, until
+     * {@link #bytes} is at most max.
+     *
+     * @param max The maximum number of bytes to keep.
+     */
+    private void evict(long max) {
+        Iterator<Map.Entry<Key, ArrayDeque<BufferedImage>>> ite
+                = images.entrySet().iterator();
+        while (bytes > max && ite.hasNext()) {
+            ArrayDeque<BufferedImage> q = ite.next().getValue();
+            while (bytes > max && !q.isEmpty()) {
+                bytes -= getBytes(q.pollFirst());
+                evictions++;
+            }
+            if (q.isEmpty()) {
+                ite.remove();
+            }
+        }
+    }
+
+    /**
+     * Sets image to be fully transparent black as a new image is.
+     *
+     * @param image The image to clear.
+     */
+    protected static void clear(BufferedImage image) {
+        DataBuffer db = image.getRaster().getDataBuffer();
+        if (db instanceof DataBufferInt dbi && dbi.getNumBanks() == 1) {
+            Arrays.fill(dbi.getData(), 0);
+        } else {
+            Graphics2D g = image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.dispose();
+        }
+    }
+
+    /**
+     * @param image The image.
+     * @return The number of bytes of pixel data of image.
+     */
+    public static long getBytes(BufferedImage image) {
+        DataBuffer db = image.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks()
+                * (DataBuffer.getDataTypeSize(db.getDataType()) / 8);
+    }
+
+    /**
+     * @return {@link #cap}.
+     */
+    public synchronized long getCap() {
+        return cap;
+    }
+
+    /**
+     * Sets the cap and drops pooled images to keep within it.
+     *
+     * @param cap What {@link #cap} is set to.
+     */
+    public synchronized void setCap(long cap) {
+        if (cap < 0) {
+            throw new IllegalArgumentException("cap " + cap + " < 0");
+        }
+        this.cap = cap;
+        evict(cap);
+    }
+
+    /**
+     * @return {@link #bytes}.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return {@link #hits}.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return {@link #misses}.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return {@link #evictions}.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The fraction of acquires that reused a pooled image.
+     */
+    public synchronized double getHitRatio() {
+        long n = hits + misses;
+        return n == 0 ? 0d : hits / (double) n;
+    }
+
+    /**
+     * Drops all pooled images.
+     */
+    public synchronized void clear() {
+        evictions += images.values().stream().mapToInt(ArrayDeque::size)
+                .sum();
+        images.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "(cap=" + cap + ", bytes=" + bytes
+                + ", hits=" + hits + ", misses=" + misses + ", evictions="
+                + evictions + ")";
+    }
+}
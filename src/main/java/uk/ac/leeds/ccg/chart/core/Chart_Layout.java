@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.util.List;
+
+/**
+ * An immutable layout of a {@link Chart}: the image size, where the data
+ * area is in it, the space around it for the title, axes and legend, and
+ * where the origin is. A layout is measured by {@link Chart#measure()}
+ * without drawing anything, and applied to a chart before it is drawn so that
+ * it is drawn once at its final size. The layout has a key (see
+ * {@link Chart#getLayoutKey()}) of what it depends on so it can be reused
+ * while only the data values change.
+ */
+public class Chart_Layout {
+
+    /**
+     * What the layout depends on or {@code null} if it should not be reused.
+     */
+    protected final List<Object> key;
+
+    protected final int imageWidth;
+    protected final int imageHeight;
+    protected final int dataStartRow;
+    protected final int dataMiddleRow;
+    protected final int dataEndRow;
+    protected final int dataStartCol;
+    protected final int dataEndCol;
+    protected final int extraWidthLeft;
+    protected final int extraWidthRight;
+    protected final int extraHeightTop;
+    protected final int extraHeightBottom;
+    protected final int xAxisHeight;
+    protected final int yAxisWidth;
+    protected final int legendWidth;
+    protected final int legendHeight;
+    protected final int originRow;
+    protected final int originCol;
+
+    /**
+     * Create a new instance from the current layout of c.
+     *
+     * @param c The chart.
+     * @param key What {@link #key} is set to.
+     */
+    protected Chart_Layout(Chart c, List<Object> key) {
+        this.key = key;
+        imageWidth = c.imageWidth;
+        imageHeight = c.imageHeight;
+        dataStartRow = c.dataStartRow;
+        dataMiddleRow = c.dataMiddleRow;
+        dataEndRow = c.dataEndRow;
+        dataStartCol = c.dataStartCol;
+        dataEndCol = c.dataEndCol;
+        extraWidthLeft = c.extraWidthLeft;
+        extraWidthRight = c.extraWidthRight;
+        extraHeightTop = c.extraHeightTop;
+        extraHeightBottom = c.extraHeightBottom;
+        xAxisHeight = c.xAxisHeight;
+        yAxisWidth = c.yAxisWidth;
+        legendWidth = c.legendWidth;
+        legendHeight = c.legendHeight;
+        originRow = c.originRow;
+        originCol = c.originCol;
+    }
+
+    /**
+     * Sets the layout of c to this.
+     *
+     * @param c The chart.
+     */
+    protected void applyTo(Chart c) {
+        c.imageWidth = imageWidth;
+        c.imageHeight = imageHeight;
+        c.dataStartRow = dataStartRow;
+        c.dataMiddleRow = dataMiddleRow;
+        c.dataEndRow = dataEndRow;
+        c.dataStartCol = dataStartCol;
+        c.dataEndCol = dataEndCol;
+        c.extraWidthLeft = extraWidthLeft;
+        c.extraWidthRight = extraWidthRight;
+        c.extraHeightTop = extraHeightTop;
+        c.extraHeightBottom = extraHeightBottom;
+        c.xAxisHeight = xAxisHeight;
+        c.yAxisWidth = yAxisWidth;
+        c.legendWidth = legendWidth;
+        c.legendHeight = legendHeight;
+        c.originRow = originRow;
+        c.originCol = originCol;
+    }
+
+    /**
+     * @param key A layout key.
+     * @return {@code true} if key is not {@code null} and equals
+     * {@link #key}.
+     */
+    public boolean isFor(List<Object> key) {
+        return key != null && key.equals(this.key);
+    }
+
+    /**
+     * @return {@link #key}.
+     */
+    public List<Object> getKey() {
+        return key;
+    }
+
+    /**
+     * @return {@link #imageWidth}.
+     */
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    /**
+     * @return {@link #imageHeight}.
+     */
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    /**
+     * @return {@link #dataStartRow}.
+     */
+    public int getDataStartRow() {
+        return dataStartRow;
+    }
+
+    /**
+     * @return {@link #dataEndRow}.
+     */
+    public int getDataEndRow() {
+        return dataEndRow;
+    }
+
+    /**
+     * @return {@link #dataStartCol}.
+     */
+    public int getDataStartCol() {
+        return dataStartCol;
+    }
+
+    /**
+     * @return {@link #dataEndCol}.
+     */
+    public int getDataEndCol() {
+        return dataEndCol;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(image=" + imageWidth + "x"
+                + imageHeight + ", data=[" + dataStartCol + "," + dataStartRow
+                + "]-[" + dataEndCol + "," + dataEndRow + "])";
+    }
+}
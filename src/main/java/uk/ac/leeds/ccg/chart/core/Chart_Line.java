@@ -29,6 +29,7 @@ import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import uk.ac.leeds.ccg.chart.data.Chart_Data;
 import uk.ac.leeds.ccg.chart.data.Chart_LineData;
+import uk.ac.leeds.ccg.chart.data.Chart_LineSeries;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.util.Generic_Collections;
 
@@ -77,6 +78,25 @@ public abstract class Chart_Line extends Chart {
     private Color[] colours;
     //private ArrayList<String> labels;
 
+    /**
+     * How each series is reduced before it is drawn. By default this is
+     * {@link Chart_LineReduction#NONE}.
+     */
+    protected Chart_LineReduction reduction = Chart_LineReduction.NONE;
+
+    /**
+     * The number of points for each column of the data area that a series is
+     * reduced to.
+     */
+    protected double reductionPointsPerColumn = 2d;
+
+    /**
+     * The minimum mean number of columns between the points of a series for
+     * markers to be drawn at them. Below this the markers would overlap, so
+     * only the lines joining the points are drawn.
+     */
+    protected double markerSpacing = 8d;
+
     public Chart_Line(Generic_Environment e) {
         super(e);
     }
@@ -567,4 +587,138 @@ public abstract class Chart_Line extends Chart {
         this.xAxisLabels = xAxisLabels;
     }
 
+    /**
+     * @return {@link #reduction}.
+     */
+    public Chart_LineReduction getReduction() {
+        return reduction;
+    }
+
+    /**
+     * @param reduction What {@link #reduction} is set to.
+     */
+    public void setReduction(Chart_LineReduction reduction) {
+        this.reduction = reduction;
+    }
+
+    /**
+     * @return {@link #reductionPointsPerColumn}.
+     */
+    public double getReductionPointsPerColumn() {
+        return reductionPointsPerColumn;
+    }
+
+    /**
+     * @param reductionPointsPerColumn What {@link #reductionPointsPerColumn}
+     * is set to.
+     */
+    public void setReductionPointsPerColumn(double reductionPointsPerColumn) {
+        this.reductionPointsPerColumn = reductionPointsPerColumn;
+    }
+
+    /**
+     * @return {@link #markerSpacing}.
+     */
+    public double getMarkerSpacing() {
+        return markerSpacing;
+    }
+
+    /**
+     * @param markerSpacing What {@link #markerSpacing} is set to.
+     */
+    public void setMarkerSpacing(double markerSpacing) {
+        this.markerSpacing = markerSpacing;
+    }
+
+    /**
+     * @param firstCol The column of the first point of a series.
+     * @param lastCol The column of the last point of the series.
+     * @param n The number of points in the series.
+     * @return {@code true} if the mean number of columns between the points
+     * is at least {@link #markerSpacing} so markers are to be drawn at them.
+     */
+    public boolean isMarked(int firstCol, int lastCol, long n) {
+        return n > 1 && (double) (lastCol - firstCol) / (n - 1)
+                >= markerSpacing;
+    }
+
+    /**
+     * @return The number of points a series is reduced to: the
+     * {@link #getDataWidth()} times {@link #reductionPointsPerColumn}, but at
+     * least 3.
+     */
+    public int getReductionTarget() {
+        return Math.max(3, (int) Math.ceil(getDataWidth()
+                * reductionPointsPerColumn));
+    }
+
+    /**
+     * Reduces the points of s in [from, to) according to {@link #reduction}.
+     * {@link Chart_LineReduction#M4} works in pixel space (see
+     * {@link #aggregate(Chart_LineSeries, int, int)}) so it keeps all the
+     * points.
+     *
+     * @param s The series.
+     * @param from The index of the first point.
+     * @param to The index after the last point.
+     * @return The points kept as {@code {xs, ys}}.
+     */
+    public double[][] reduce(Chart_LineSeries s, int from, int to) {
+        int n = to - from;
+        int target = reduction == Chart_LineReduction.LTTB
+                ? getReductionTarget() : n;
+        int m = Math.min(n, target);
+        double[] xs = new double[m];
+        double[] ys = new double[m];
+        Chart_Lttb.downsample(s.getXs(), s.getYs(), from, n, target, xs, ys);
+        return new double[][]{xs, ys};
+    }
+
+    /**
+     * Aggregates the points of s in [from, to) in a single pass with
+     * {@link Chart_M4} for drawing. Markers are deduplicated within the rows
+     * of the image.
+     *
+     * @param s The series.
+     * @param from The index of the first point.
+     * @param to The index after the last point.
+     * @return The aggregate of the pixels of the points.
+     */
+    public Chart_M4 aggregate(Chart_LineSeries s, int from, int to) {
+        Chart_M4 r = new Chart_M4(0, imageHeight);
+        double[] xs = s.getXs();
+        double[] ys = s.getYs();
+        for (int i = from; i < to; i++) {
+            r.add(getCol(xs[i]), getRow(ys[i]));
+        }
+        r.flush();
+        return r;
+    }
+
+    /**
+     * @param s The series.
+     * @return The index of the first point of s to draw: the last point
+     * before the minimum x of the data, so that the line into the data area
+     * is drawn, or if there is none, 0.
+     */
+    public int getFromIndex(Chart_LineSeries s) {
+        if (data.minX == null) {
+            return 0;
+        }
+        return Math.max(0, s.fromIndex(data.minX.toDouble()) - 1);
+    }
+
+    /**
+     * @param s The series.
+     * @return The index after the last point of s to draw: after the first
+     * point after the maximum x of the data, or if there is none,
+     * {@link Chart_LineSeries#size()}.
+     */
+    public int getToIndex(Chart_LineSeries s) {
+        if (data.maxX == null) {
+            return s.size();
+        }
+        return Math.min(s.size(), s.toIndex(data.maxX.toDouble()) + 1);
+    }
+
 }
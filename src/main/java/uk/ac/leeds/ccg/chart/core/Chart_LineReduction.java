@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+/**
+ * How {@link Chart_Line} reduces each series before it is drawn, so that a
+ * series of many more points than there are columns in the data area is not
+ * drawn point by point.
+ */
+public enum Chart_LineReduction {
+
+    /**
+     * Every point is drawn.
+     */
+    NONE,
+
+    /**
+     * The series is downsampled with {@link Chart_Lttb} to
+     * {@link Chart_Line#getReductionTarget()} points.
+     */
+    LTTB,
+
+    /**
+     * The series is aggregated in pixel space with {@link Chart_M4}, so only
+     * the first, last, minimum and maximum points of each column are drawn.
+     * Unlike {@link #LTTB} the result is the same as drawing every point.
+     */
+    M4
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of a series for drawing. The
+ * first and last points are kept and the points in between are split into
+ * equal sized buckets. From each bucket the point kept is the one making the
+ * largest triangle with the point kept from the previous bucket and the
+ * average of the points in the next bucket. This keeps the peaks and troughs
+ * that give a line its visual shape. It takes time linear in the number of
+ * points and works on primitive arrays.
+ */
+public class Chart_Lttb {
+
+    private Chart_Lttb() {
+    }
+
+    /**
+     * Downsamples the series xs[i], ys[i] for i in [0, n) which should be in
+     * order of x. The points kept are written to the start of outXs and
+     * outYs which may be xs and ys, in which case the series is downsampled
+     * in place.
+     *
+     * @param xs The x values.
+     * @param ys The y values.
+     * @param n The number of points.
+     * @param threshold The number of points to keep. If this is less than 3
+     * or not less than n then all the points are kept.
+     * @param outXs The array into which the x values kept are written.
+     * @param outYs The array into which the y values kept are written.
+     * @return The number of points kept.
+     */
+    public static int downsample(double[] xs, double[] ys, int n,
+            int threshold, double[] outXs, double[] outYs) {
+        return downsample(xs, ys, 0, n, threshold, outXs, outYs);
+    }
+
+    /**
+     * Downsamples the series xs[i], ys[i] for i in [offset, offset + n) which
+     * should be in order of x. The points kept are written to the start of
+     * outXs and outYs, which need only be as long as the number of points
+     * kept. If offset is 0 these may be xs and ys, in which case the series
+     * is downsampled in place.
+     *
+     * @param xs The x values.
+     * @param ys The y values.
+     * @param offset The index of the first point.
+     * @param n The number of points.
+     * @param threshold The number of points to keep. If this is less than 3
+     * or not less than n then all the points are kept.
+     * @param outXs The array into which the x values kept are written.
+     * @param outYs The array into which the y values kept are written.
+     * @return The number of points kept.
+     */
+    public static int downsample(double[] xs, double[] ys, int offset, int n,
+            int threshold, double[] outXs, double[] outYs) {
+        if (threshold < 3 || threshold >= n) {
+            System.arraycopy(xs, offset, outXs, 0, n);
+            System.arraycopy(ys, offset, outYs, 0, n);
+            return n;
+        }
+        /*
+         * Points are read from bucket i before the point kept from it is
+         * written at index i + 1, and buckets start at index i + 1 or later,
+         * so downsampling in place does not overwrite points still to be read.
+         */
+        double every = (double) (n - 2) / (threshold - 2);
+        double ax = xs[offset];
+        double ay = ys[offset];
+        outXs[0] = ax;
+        outYs[0] = ay;
+        int k = 1;
+        for (int i = 0; i < threshold - 2; i++) {
+            int start = offset + (int) (i * every) + 1;
+            int end = offset + (int) ((i + 1) * every) + 1;
+            int nextEnd = offset + Math.min((int) ((i + 2) * every) + 1, n);
+            double cx = 0d;
+            double cy = 0d;
+            for (int j = end; j < nextEnd; j++) {
+                cx += xs[j];
+                cy += ys[j];
+            }
+            int m = nextEnd - end;
+            cx /= m;
+            cy /= m;
+            double max = -1d;
+            int kept = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - cx) * (ys[j] - ay)
+                        - (ax - xs[j]) * (cy - ay));
+                if (area > max) {
+                    max = area;
+                    kept = j;
+                }
+            }
+            ax = xs[kept];
+            ay = ys[kept];
+            outXs[k] = ax;
+            outYs[k] = ay;
+            k++;
+        }
+        outXs[k] = xs[offset + n - 1];
+        outYs[k] = ys[offset + n - 1];
+        return k + 1;
+    }
+}
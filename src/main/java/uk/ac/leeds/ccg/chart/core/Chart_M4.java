@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * M4 aggregation of a line in pixel space. Points are added in the order they
+ * are joined and consecutive points in the same column form a run. For each
+ * run only the first, last, minimum row and maximum row points are kept, in
+ * the order they were added. Within a column the line is a vertical span
+ * between the minimum and maximum rows, so joining the points kept draws the
+ * same pixels as joining every point. The distinct pixels of the points are
+ * also kept so that markers drawn on them are the same too.
+ *
+ * This takes a single pass over the points with state for one run, so the
+ * cost is linear in the number of points and what is kept is proportional to
+ * the width drawn over (and for markers, the pixels they are on).
+ */
+public class Chart_M4 {
+
+    /**
+     * The rows from which marker pixels are deduplicated. Markers outside
+     * these are kept as added.
+     */
+    private final int minRow;
+    private final int maxRow;
+
+    /**
+     * The points kept for the line. Only the first {@link #size} are points.
+     */
+    private int[] cols;
+    private int[] rows;
+    private int size;
+
+    /**
+     * The distinct pixels of markers. Only the first {@link #markerSize} are
+     * pixels.
+     */
+    private int[] markerCols;
+    private int[] markerRows;
+    private int markerSize;
+
+    /**
+     * The number of points added.
+     */
+    private long count;
+
+    /**
+     * The current run: its column, the rows of its first, minimum, maximum and
+     * last points, the positions of the minimum and maximum points in the run
+     * and its length.
+     */
+    private int runCol;
+    private int firstRow;
+    private int minimumRow;
+    private int maximumRow;
+    private int lastRow;
+    private int minimumAt;
+    private int maximumAt;
+    private int runLength;
+
+    /**
+     * The rows in the current run of markers (relative to {@link #minRow})
+     * and the lowest and highest set.
+     */
+    private final BitSet runRows = new BitSet();
+    private int runRowsLow;
+    private int runRowsHigh;
+
+    /**
+     * @param minRow The lowest row from which markers are deduplicated,
+     * typically 0.
+     * @param maxRow The highest row from which markers are deduplicated,
+     * typically the image height.
+     */
+    public Chart_M4(int minRow, int maxRow) {
+        this.minRow = minRow;
+        this.maxRow = maxRow;
+        cols = new int[64];
+        rows = new int[64];
+        markerCols = new int[64];
+        markerRows = new int[64];
+    }
+
+    /**
+     * Adds the next point.
+     *
+     * @param col The column.
+     * @param row The row.
+     */
+    public void add(int col, int row) {
+        if (runLength > 0 && col != runCol) {
+            flush();
+        }
+        count++;
+        if (runLength == 0) {
+            runCol = col;
+            firstRow = row;
+            minimumRow = row;
+            maximumRow = row;
+            minimumAt = 0;
+            maximumAt = 0;
+            runRowsLow = Integer.MAX_VALUE;
+            runRowsHigh = Integer.MIN_VALUE;
+        } else if (row < minimumRow) {
+            minimumRow = row;
+            minimumAt = runLength;
+        } else if (row > maximumRow) {
+            maximumRow = row;
+            maximumAt = runLength;
+        }
+        lastRow = row;
+        runLength++;
+        if (row >= minRow && row <= maxRow) {
+            int r = row - minRow;
+            runRows.set(r);
+            runRowsLow = Math.min(runRowsLow, r);
+            runRowsHigh = Math.max(runRowsHigh, r);
+        } else {
+            addMarker(col, row);
+        }
+    }
+
+    /**
+     * Ends the current run, keeping its points. This is done by
+     * {@link #add(int, int)} when the column changes and must be done after
+     * the last point is added.
+     */
+    public void flush() {
+        if (runLength == 0) {
+            return;
+        }
+        int a = Math.min(minimumAt, maximumAt);
+        int b = Math.max(minimumAt, maximumAt);
+        int last = runLength - 1;
+        addPoint(runCol, firstRow);
+        if (a > 0) {
+            addPoint(runCol, a == minimumAt ? minimumRow : maximumRow);
+        }
+        if (b > a) {
+            addPoint(runCol, b == minimumAt ? minimumRow : maximumRow);
+        }
+        if (last > b) {
+            addPoint(runCol, lastRow);
+        }
+        if (runRowsLow <= runRowsHigh) {
+            for (int r = runRows.nextSetBit(runRowsLow); r >= 0
+                    && r <= runRowsHigh; r = runRows.nextSetBit(r + 1)) {
+                addMarker(runCol, r + minRow);
+            }
+            runRows.clear(runRowsLow, runRowsHigh + 1);
+        }
+        runLength = 0;
+    }
+
+    private void addPoint(int col, int row) {
+        if (size == cols.length) {
+            cols = Arrays.copyOf(cols, size * 2);
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        cols[size] = col;
+        rows[size] = row;
+        size++;
+    }
+
+    private void addMarker(int col, int row) {
+        if (markerSize == markerCols.length) {
+            markerCols = Arrays.copyOf(markerCols, markerSize * 2);
+            markerRows = Arrays.copyOf(markerRows, markerSize * 2);
+        }
+        markerCols[markerSize] = col;
+        markerRows[markerSize] = row;
+        markerSize++;
+    }
+
+    /**
+     * @return The number of points added.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The number of points kept for the line.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The columns of the points kept for the line. Only the first
+     * {@link #size()} are points.
+     */
+    public int[] getCols() {
+        return cols;
+    }
+
+    /**
+     * @return The rows of the points kept for the line. Only the first
+     * {@link #size()} are points.
+     */
+    public int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The number of distinct marker pixels.
+     */
+    public int getMarkerSize() {
+        return markerSize;
+    }
+
+    /**
+     * @return The columns of the distinct marker pixels. Only the first
+     * {@link #getMarkerSize()} are pixels.
+     */
+    public int[] getMarkerCols() {
+        return markerCols;
+    }
+
+    /**
+     * @return The rows of the distinct marker pixels. Only the first
+     * {@link #getMarkerSize()} are pixels.
+     */
+    public int[] getMarkerRows() {
+        return markerRows;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+/**
+ * The shapes of marker that {@link Chart#drawMarkers} can draw. Each marker
+ * is centred on a pixel and has a size which is the distance in pixels from
+ * the centre to the edge of the marker.
+ */
+public enum Chart_Marker {
+
+    /**
+     * An x shaped cross drawn as two diagonal lines.
+     */
+    CROSS,
+
+    /**
+     * A + shaped cross drawn as a horizontal and a vertical line.
+     */
+    PLUS,
+
+    /**
+     * A single filled pixel (the size is ignored).
+     */
+    DOT,
+
+    /**
+     * The outline of a square.
+     */
+    SQUARE
+}
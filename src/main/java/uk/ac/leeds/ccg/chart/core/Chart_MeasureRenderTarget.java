@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+
+/**
+ * A {@link Chart_RenderTarget} that draws nothing and only keeps track of the
+ * transform. It is used to lay out a chart without rendering it.
+ */
+public class Chart_MeasureRenderTarget implements Chart_RenderTarget {
+
+    /**
+     * The current transform.
+     */
+    protected AffineTransform transform;
+
+    /**
+     * Create a new instance.
+     */
+    public Chart_MeasureRenderTarget() {
+        transform = new AffineTransform();
+    }
+
+    @Override
+    public void setPaint(Color c) {
+    }
+
+    @Override
+    public void draw(Shape s) {
+    }
+
+    @Override
+    public void fill(Shape s) {
+    }
+
+    @Override
+    public void fillRect(int col, int row, int width, int height) {
+    }
+
+    @Override
+    public void drawString(String text, int col, int row) {
+    }
+
+    @Override
+    public void transform(AffineTransform t) {
+        transform.concatenate(t);
+    }
+
+    @Override
+    public void setTransform(AffineTransform t) {
+        transform = new AffineTransform(t);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import uk.ac.leeds.ccg.chart.execution.Chart_MemoryAdmission;
+
+/**
+ * A batch pipeline that renders charts in three stages joined by bounded
+ * queues:
+ * <ol>
+ * <li>{@link Stage#RENDER} draws each chart on platform threads, one for
+ * each available processor by default.</li>
+ * <li>{@link Stage#ENCODE} encodes each image on platform threads.</li>
+ * <li>{@link Stage#WRITE} writes each encoded image to file on virtual
+ * threads, so that waiting on I/O does not hold up drawing or encoding.</li>
+ * </ol>
+ * When a queue is full the stage before waits, and when the first queue is
+ * full {@link #submit(Chart)} waits. Chart listeners are notified of each
+ * stage and of rendering being complete as they are when a chart is run.
+ * Each chart is admitted by its {@link Chart#getAdmission()} before it is
+ * drawn and released once written or failed.
+ */
+public class Chart_Pipeline implements AutoCloseable {
+
+    /**
+     * The stages.
+     */
+    public enum Stage {
+        RENDER, ENCODE, WRITE
+    }
+
+    /**
+     * A chart passing through the pipeline.
+     */
+    private static class Job {
+
+        final Chart chart;
+        final CompletableFuture<Chart_RenderService.Result> future;
+        Chart_MemoryAdmission admission;
+        long memory;
+        long t0;
+        long primitives;
+        BufferedImage image;
+        ByteArrayOutputStream encoded;
+
+        Job(Chart chart) {
+            this.chart = chart;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Put on a queue once for each thread of a stage to stop it.
+     */
+    private static final Job STOP = new Job(null);
+
+    /**
+     * The queues into each stage.
+     */
+    private final List<BlockingQueue<Job>> queues;
+
+    /**
+     * The threads of each stage.
+     */
+    private final List<List<Thread>> threads;
+
+    /**
+     * For each stage, the number of threads still running.
+     */
+    private final AtomicInteger[] running;
+
+    /**
+     * For each stage, the number of charts processed, failed and the total
+     * time in nanoseconds spent processing.
+     */
+    private final AtomicLong[] processed;
+    private final AtomicLong[] failed;
+    private final AtomicLong[] nanos;
+
+    /**
+     * Set once {@link #shutdown()} is called.
+     */
+    private volatile boolean shutdown;
+
+    /**
+     * Create a new instance with a render thread for each available
+     * processor, half as many encode threads, 64 write threads and queues
+     * four times the number of render threads.
+     */
+    public Chart_Pipeline() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new instance with half as many encode threads as render
+     * threads, 64 write threads and queues four times the number of render
+     * threads.
+     *
+     * @param renderThreads The number of render threads.
+     */
+    public Chart_Pipeline(int renderThreads) {
+        this(renderThreads, Math.max(1, renderThreads / 2), 64,
+                renderThreads * 4);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param renderThreads The number of render threads.
+     * @param encodeThreads The number of encode threads.
+     * @param writeThreads The number of virtual write threads.
+     * @param queueCapacity The capacity of each queue.
+     */
+    public Chart_Pipeline(int renderThreads, int encodeThreads,
+            int writeThreads, int queueCapacity) {
+        if (renderThreads < 1 || encodeThreads < 1 || writeThreads < 1
+                || queueCapacity < 1) {
+            throw new IllegalArgumentException("renderThreads "
+                    + renderThreads + ", encodeThreads " + encodeThreads
+                    + ", writeThreads " + writeThreads + " and queueCapacity "
+                    + queueCapacity + " must all be at least 1");
+        }
+        int n = Stage.values().length;
+        queues = new ArrayList<>(n);
+        threads = new ArrayList<>(n);
+        running = new AtomicInteger[n];
+        processed = new AtomicLong[n];
+        failed = new AtomicLong[n];
+        nanos = new AtomicLong[n];
+        int[] sizes = {renderThreads, encodeThreads, writeThreads};
+        for (Stage s : Stage.values()) {
+            int i = s.ordinal();
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+            running[i] = new AtomicInteger(sizes[i]);
+            processed[i] = new AtomicLong();
+            failed[i] = new AtomicLong();
+            nanos[i] = new AtomicLong();
+        }
+        for (Stage s : Stage.values()) {
+            int i = s.ordinal();
+            List<Thread> ts = new ArrayList<>(sizes[i]);
+            for (int j = 0; j < sizes[i]; j++) {
+                String name = "chart-" + s.name().toLowerCase() + "-" + j;
+                Runnable r = () -> work(s);
+                Thread t;
+                if (s == Stage.WRITE) {
+                    t = Thread.ofVirtual().name(name).start(r);
+                } else {
+                    t = Thread.ofPlatform().name(name).daemon(true).start(r);
+                }
+                ts.add(t);
+            }
+            threads.add(ts);
+        }
+    }
+
+    /**
+     * Submits chart to the pipeline. This blocks while the first queue is
+     * full, as do other submissions and {@link #shutdown()}.
+     *
+     * @param chart The chart to render, encode and write.
+     * @return A future for the result which completes once the file is
+     * written.
+     * @throws InterruptedException If interrupted waiting for room in the
+     * queue.
+     * @throws RejectedExecutionException If the pipeline is shut down.
+     */
+    public CompletableFuture<Chart_RenderService.Result> submit(Chart chart)
+            throws InterruptedException {
+        Job job = new Job(chart);
+        // Check and put holding the lock shutdown() holds to put the STOP
+        // markers, so no job can be queued after them.
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Pipeline is shut down");
+            }
+            queues.get(0).put(job);
+        }
+        return job.future;
+    }
+
+    /**
+     * Takes jobs for stage s until stopped.
+     *
+     * @param s The stage.
+     */
+    private void work(Stage s) {
+        int i = s.ordinal();
+        BlockingQueue<Job> in = queues.get(i);
+        try {
+            while (true) {
+                Job job = in.take();
+                if (job == STOP) {
+                    break;
+                }
+                long t0 = System.nanoTime();
+                try {
+                    process(s, job);
+                    processed[i].incrementAndGet();
+                } catch (Exception | Error e) {
+                    failed[i].incrementAndGet();
+                    if (job.image != null) {
+                        job.chart.recycle(job.image);
+                        job.image = null;
+                    }
+                    if (job.admission != null) {
+                        job.admission.release(job.memory);
+                    }
+                    job.future.completeExceptionally(e);
+                    if (e instanceof InterruptedException) {
+                        throw (InterruptedException) e;
+                    }
+                } finally {
+                    nanos[i].addAndGet(System.nanoTime() - t0);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (running[i].decrementAndGet() == 0) {
+                if (i == 0) {
+                    reject(in);
+                }
+                if (i + 1 < queues.size()) {
+                    stop(i + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes job for stage s and hands it on to the next stage.
+     *
+     * @param s The stage.
+     * @param job The job.
+     * @throws Exception If encountered.
+     */
+    private void process(Stage s, Job job) throws Exception {
+        Chart c = job.chart;
+        switch (s) {
+            case RENDER -> {
+                Chart_MemoryAdmission a = c.getAdmission();
+                job.memory = c.estimateMemory();
+                a.acquire(job.memory);
+                job.admission = a;
+                job.t0 = System.nanoTime();
+                long p0 = c.primitiveCount;
+                job.image = c.renderImage();
+                if (job.image == null) {
+                    throw new IllegalStateException("Rendering " + c.getFile()
+                            + " failed");
+                }
+                job.primitives = c.primitiveCount - p0;
+                queues.get(Stage.ENCODE.ordinal()).put(job);
+            }
+            case ENCODE -> {
+                job.encoded = c.encode(job.image);
+                queues.get(Stage.WRITE.ordinal()).put(job);
+            }
+            case WRITE -> {
+                c.writeEncoded(job.image, job.encoded);
+                long bytes = job.encoded.size();
+                job.encoded = null;
+                c.fireRenderingComplete(job.image, job.t0, job.primitives,
+                        bytes);
+                BufferedImage kept = c.recycle(job.image);
+                job.image = null;
+                job.admission.release(job.memory);
+                job.admission = null;
+                job.future.complete(new Chart_RenderService.Result(c, kept,
+                        c.getFile(), bytes));
+            }
+        }
+    }
+
+    /**
+     * Completes exceptionally any jobs left queued once the render threads
+     * have all stopped, as they may if interrupted.
+     *
+     * @param q The queue to drain.
+     */
+    private void reject(BlockingQueue<Job> q) {
+        Job job;
+        while ((job = q.poll()) != null) {
+            if (job != STOP) {
+                job.future.completeExceptionally(
+                        new RejectedExecutionException("Pipeline is shut down"));
+            }
+        }
+    }
+
+    /**
+     * Stops the threads of a stage once its queue is drained.
+     *
+     * @param i The stage ordinal.
+     */
+    private void stop(int i) {
+        BlockingQueue<Job> q = queues.get(i);
+        int n = threads.get(i).size();
+        try {
+            for (int j = 0; j < n; j++) {
+                q.put(STOP);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param s The stage.
+     * @return The number of charts waiting to enter stage s.
+     */
+    public int getQueueDepth(Stage s) {
+        return queues.get(s.ordinal()).size();
+    }
+
+    /**
+     * @param s The stage.
+     * @return The number of charts stage s has processed.
+     */
+    public long getProcessed(Stage s) {
+        return processed[s.ordinal()].get();
+    }
+
+    /**
+     * @param s The stage.
+     * @return The number of charts that failed in stage s.
+     */
+    public long getFailed(Stage s) {
+        return failed[s.ordinal()].get();
+    }
+
+    /**
+     * @param s The stage.
+     * @return The total time in nanoseconds stage s spent processing.
+     */
+    public long getNanos(Stage s) {
+        return nanos[s.ordinal()].get();
+    }
+
+    /**
+     * Stops accepting charts. Those submitted still pass through all stages.
+     * This waits for any {@link #submit(Chart)} waiting for room in the first
+     * queue.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            stop(0);
+        }
+    }
+
+    /**
+     * Shuts down and waits for all submitted charts to be written.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void awaitTermination() throws InterruptedException {
+        shutdown();
+        for (List<Thread> ts : threads) {
+            for (Thread t : ts) {
+                t.join();
+            }
+        }
+    }
+
+    /**
+     * Shuts down and waits for all submitted charts to be written.
+     */
+    @Override
+    public void close() {
+        try {
+            awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+        sb.append("(");
+        for (Stage s : Stage.values()) {
+            if (s.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(s).append(": queued=").append(getQueueDepth(s))
+                    .append(" processed=").append(getProcessed(s))
+                    .append(" failed=").append(getFailed(s))
+                    .append(" ms=").append(getNanos(s) / 1000000L);
+        }
+        return sb.append(")").toString();
+    }
+}
@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder for chart images. Rows are filtered with a chosen
+ * {@link Filter} and compressed at a chosen level. Large images are split
+ * into blocks of rows that are filtered and compressed in parallel, each
+ * primed with the 32KB of data before it, and joined into a single zlib
+ * stream in one IDAT chunk. Images that are fully opaque are written as RGB,
+ * others as RGBA, both with 8 bits per sample. Charts are mostly flat colour
+ * which compresses best without filtering, so {@link Filter#NONE} is the
+ * default.
+ *
+ * An encoder can be chosen with a format such as {@code "PNG:fast"} or
+ * {@code "PNG:small"} (see {@link #forFormat(String)}).
+ */
+public class Chart_PngEncoder {
+
+    /**
+     * The format name.
+     */
+    public static final String FORMAT_NAME = "PNG";
+
+    /**
+     * The default number of bytes of filtered data in a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 18;
+
+    /**
+     * The size of the deflate window and so of the dictionary for a block.
+     */
+    private static final int WINDOW = 1 << 15;
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10,
+        26, 10};
+
+    /**
+     * PNG filter types. {@link #ADAPTIVE} chooses a filter for each row
+     * using the minimum sum of absolute differences heuristic.
+     */
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE
+    }
+
+    /**
+     * The compression level from 0 to 9 or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    protected final int level;
+
+    /**
+     * The filter.
+     */
+    protected final Filter filter;
+
+    /**
+     * The number of bytes of filtered data in a block compressed on its own.
+     */
+    protected final int blockSize;
+
+    /**
+     * Create a new instance with the default compression level,
+     * {@link Filter#NONE} and {@link #DEFAULT_BLOCK_SIZE}.
+     */
+    public Chart_PngEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION, Filter.NONE, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param level What {@link #level} is set to.
+     * @param filter What {@link #filter} is set to.
+     * @param blockSize What {@link #blockSize} is set to.
+     */
+    public Chart_PngEncoder(int level, Filter filter, int blockSize) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("level " + level);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize " + blockSize);
+        }
+        this.level = level;
+        this.filter = filter;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns an encoder for a format of the form
+     * {@code PNG[:option[,option]]} where each option is one of:
+     * <ul>
+     * <li>{@code fast} - compression level 1;</li>
+     * <li>{@code small} - compression level 9;</li>
+     * <li>a compression level from {@code 0} to {@code 9};</li>
+     * <li>the name of a {@link Filter} such as {@code paeth}.</li>
+     * </ul>
+     * Unless given, the default compression level and {@link Filter#NONE}
+     * are used.
+     *
+     * @param format The format.
+     * @return An encoder.
+     * @throws IllegalArgumentException If format is not {@link #FORMAT_NAME}
+     * or an option is not recognised.
+     */
+    public static Chart_PngEncoder forFormat(String format) {
+        if (!isPng(format)) {
+            throw new IllegalArgumentException("Format " + format
+                    + " is not " + FORMAT_NAME);
+        }
+        int l = Deflater.DEFAULT_COMPRESSION;
+        Filter f = Filter.NONE;
+        String options = getFormatOption(format);
+        if (options != null && !options.isEmpty()) {
+            for (String o : options.split(",")) {
+                o = o.trim().toLowerCase();
+                switch (o) {
+                    case "fast" ->
+                        l = Deflater.BEST_SPEED;
+                    case "small" ->
+                        l = Deflater.BEST_COMPRESSION;
+                    default -> {
+                        if (o.length() == 1 && Character.isDigit(o.charAt(0))) {
+                            l = o.charAt(0) - '0';
+                        } else {
+                            try {
+                                f = Filter.valueOf(o.toUpperCase());
+                            } catch (IllegalArgumentException e) {
+                                throw new IllegalArgumentException(
+                                        "Unrecognised option " + o
+                                        + " in format " + format);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new Chart_PngEncoder(l, f, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param format The format.
+     * @return The part of format before any {@code ':'}.
+     */
+    public static String getFormatName(String format) {
+        int i = format.indexOf(':');
+        return i < 0 ? format : format.substring(0, i);
+    }
+
+    /**
+     * @param format The format.
+     * @return The part of format after the first {@code ':'} or {@code null}.
+     */
+    public static String getFormatOption(String format) {
+        int i = format.indexOf(':');
+        return i < 0 ? null : format.substring(i + 1);
+    }
+
+    /**
+     * @param format The format.
+     * @return {@code true} if the name of format is {@link #FORMAT_NAME}.
+     */
+    public static boolean isPng(String format) {
+        return format != null
+                && FORMAT_NAME.equalsIgnoreCase(getFormatName(format));
+    }
+
+    /**
+     * @return {@link #level}.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return {@link #filter}.
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * A block of rows compressed on its own.
+     */
+    private static class Block {
+
+        byte[] data;
+        int length;
+        long adler;
+        long rawLength;
+    }
+
+    /**
+     * Encodes image as a PNG and writes it to out.
+     *
+     * @param image The image to encode.
+     * @param out The stream to write to.
+     * @throws IOException If encountered writing.
+     */
+    public void write(BufferedImage image, OutputStream out)
+            throws IOException {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int[] pixels = null;
+        if (Chart_RasterRenderTarget.isSupported(image)) {
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+                    .getData();
+        }
+        boolean alpha = hasAlpha(image, pixels);
+        int bpp = alpha ? 4 : 3;
+        int rowBytes = w * bpp;
+        int rowsPerBlock = Math.max(1, blockSize / (rowBytes + 1));
+        int nBlocks = (h + rowsPerBlock - 1) / rowsPerBlock;
+        Block[] blocks = new Block[nBlocks];
+        final int[] px = pixels;
+        IntStream is = IntStream.range(0, nBlocks);
+        if (nBlocks > 1) {
+            is = is.parallel();
+        }
+        is.forEach(b -> blocks[b] = compress(image, px, w, h, bpp,
+                b * rowsPerBlock, Math.min(h, (b + 1) * rowsPerBlock),
+                b == nBlocks - 1));
+        ByteArrayOutputStream idat = new ByteArrayOutputStream(
+                Arrays.stream(blocks).mapToInt(x -> x.length).sum() + 6);
+        idat.write(0x78);
+        idat.write(zlibFlags());
+        long adler = 1L;
+        for (Block b : blocks) {
+            idat.write(b.data, 0, b.length);
+            adler = combineAdler(adler, b.adler, b.rawLength);
+        }
+        idat.write((int) (adler >>> 24));
+        idat.write((int) (adler >>> 16));
+        idat.write((int) (adler >>> 8));
+        idat.write((int) adler);
+        out.write(SIGNATURE);
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, w);
+        putInt(ihdr, 4, h);
+        ihdr[8] = 8;
+        ihdr[9] = (byte) (alpha ? 6 : 2);
+        writeChunk(out, "IHDR", ihdr, ihdr.length);
+        writeChunk(out, "IDAT", idat.toByteArray(), idat.size());
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    /**
+     * @param image The image.
+     * @param pixels The pixels of image if they are directly accessible.
+     * @return {@code true} if any pixel is not fully opaque.
+     */
+    private static boolean hasAlpha(BufferedImage image, int[] pixels) {
+        if (!image.getColorModel().hasAlpha()) {
+            return false;
+        }
+        if (pixels != null) {
+            return IntStream.range(0, pixels.length).parallel()
+                    .anyMatch(i -> (pixels[i] >>> 24) != 0xFF);
+        }
+        int w = image.getWidth();
+        int[] row = new int[w];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            for (int p : row) {
+                if ((p >>> 24) != 0xFF) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Filters and compresses the rows from y0 (inclusive) to y1 (exclusive).
+     * The compressor is primed with the filtered data before y0.
+     */
+    private Block compress(BufferedImage image, int[] pixels, int w, int h,
+            int bpp, int y0, int y1, boolean last) {
+        int rowBytes = w * bpp;
+        int stride = rowBytes + 1;
+        // Rows before y0 needed for the dictionary.
+        int dictRows = Math.min(y0, (WINDOW + stride - 1) / stride);
+        int start = y0 - dictRows;
+        byte[] filtered = new byte[(y1 - start) * stride];
+        byte[] prev = new byte[rowBytes];
+        byte[] cur = new byte[rowBytes];
+        int[] argb = new int[w];
+        if (start > 0) {
+            toBytes(image, pixels, w, start - 1, bpp, argb, prev);
+        }
+        for (int y = start; y < y1; y++) {
+            toBytes(image, pixels, w, y, bpp, argb, cur);
+            filterRow(cur, prev, bpp, filtered, (y - start) * stride);
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        int off = dictRows * stride;
+        int len = filtered.length - off;
+        Deflater d = new Deflater(level, true);
+        try {
+            if (off > 0) {
+                int dl = Math.min(off, WINDOW);
+                d.setDictionary(filtered, off - dl, dl);
+            }
+            d.setInput(filtered, off, len);
+            byte[] buf = new byte[Math.max(64, len / 2)];
+            int n = 0;
+            if (last) {
+                d.finish();
+                while (!d.finished()) {
+                    if (n == buf.length) {
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    }
+                    n += d.deflate(buf, n, buf.length - n);
+                }
+            } else {
+                // Flush to a byte boundary so blocks can be concatenated.
+                while (true) {
+                    if (n == buf.length) {
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    }
+                    int k = d.deflate(buf, n, buf.length - n,
+                            Deflater.SYNC_FLUSH);
+                    n += k;
+                    if (n < buf.length) {
+                        break;
+                    }
+                }
+            }
+            Adler32 a = new Adler32();
+            a.update(filtered, off, len);
+            Block b = new Block();
+            b.data = buf;
+            b.length = n;
+            b.adler = a.getValue();
+            b.rawLength = len;
+            return b;
+        } finally {
+            d.end();
+        }
+    }
+
+    /**
+     * Converts row y of image into RGB or RGBA bytes.
+     */
+    private static void toBytes(BufferedImage image, int[] pixels, int w,
+            int y, int bpp, int[] argb, byte[] out) {
+        int[] row;
+        int o;
+        if (pixels != null) {
+            row = pixels;
+            o = y * w;
+        } else {
+            image.getRGB(0, y, w, 1, argb, 0, w);
+            row = argb;
+            o = 0;
+        }
+        int j = 0;
+        if (bpp == 4) {
+            for (int x = 0; x < w; x++) {
+                int p = row[o + x];
+                out[j++] = (byte) (p >> 16);
+                out[j++] = (byte) (p >> 8);
+                out[j++] = (byte) p;
+                out[j++] = (byte) (p >>> 24);
+            }
+        } else {
+            for (int x = 0; x < w; x++) {
+                int p = row[o + x];
+                out[j++] = (byte) (p >> 16);
+                out[j++] = (byte) (p >> 8);
+                out[j++] = (byte) p;
+            }
+        }
+    }
+
+    /**
+     * Writes the filter type byte and filtered row cur into out at off.
+     */
+    private void filterRow(byte[] cur, byte[] prev, int bpp, byte[] out,
+            int off) {
+        Filter f = filter;
+        if (f == Filter.ADAPTIVE) {
+            f = Filter.NONE;
+            long best = Long.MAX_VALUE;
+            for (int t = 0; t < 5; t++) {
+                long s = cost(cur, prev, bpp, t, best);
+                if (s < best) {
+                    best = s;
+                    f = Filter.values()[t];
+                }
+            }
+        }
+        int t = f.ordinal();
+        out[off] = (byte) t;
+        int o = off + 1;
+        if (f == Filter.NONE) {
+            System.arraycopy(cur, 0, out, o, cur.length);
+            return;
+        }
+        for (int i = 0; i < cur.length; i++) {
+            out[o + i] = (byte) filter(cur, prev, bpp, t, i);
+        }
+    }
+
+    /**
+     * @return The sum of absolute signed values of the row filtered with
+     * filter type t, stopping early once it reaches limit.
+     */
+    private static long cost(byte[] cur, byte[] prev, int bpp, int t,
+            long limit) {
+        long s = 0;
+        for (int i = 0; i < cur.length; i++) {
+            s += Math.abs((byte) filter(cur, prev, bpp, t, i));
+            if (s >= limit) {
+                break;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * @return Byte i of the row filtered with filter type t.
+     */
+    private static int filter(byte[] cur, byte[] prev, int bpp, int t, int i) {
+        int x = cur[i] & 0xFF;
+        int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+        int b = prev[i] & 0xFF;
+        switch (t) {
+            case 1:
+                return x - a;
+            case 2:
+                return x - b;
+            case 3:
+                return x - ((a + b) >>> 1);
+            case 4:
+                int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                return x - paeth(a, b, c);
+            default:
+                return x;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * @return The zlib FLG byte for {@link #level}.
+     */
+    private int zlibFlags() {
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+            return 0x9C;
+        }
+        if (level < 2) {
+            return 0x01;
+        }
+        return level < 6 ? 0x5E : 0xDA;
+    }
+
+    /**
+     * Combines the Adler-32 checksum of two sequences as zlib's
+     * adler32_combine does.
+     *
+     * @param a1 The checksum of the first sequence.
+     * @param a2 The checksum of the second sequence.
+     * @param len2 The length of the second sequence.
+     * @return The checksum of the two sequences concatenated.
+     */
+    static long combineAdler(long a1, long a2, long len2) {
+        final long base = 65521L;
+        long rem = len2 % base;
+        long sum1 = a1 & 0xFFFF;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (a2 & 0xFFFF) + base - 1;
+        sum2 += ((a1 >>> 16) & 0xFFFF) + ((a2 >>> 16) & 0xFFFF) + base - rem;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data,
+            int length) throws IOException {
+        byte[] head = new byte[8];
+        putInt(head, 0, length);
+        for (int i = 0; i < 4; i++) {
+            head[4 + i] = (byte) type.charAt(i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(head, 4, 4);
+        crc.update(data, 0, length);
+        byte[] tail = new byte[4];
+        putInt(tail, 0, (int) crc.getValue());
+        out.write(head);
+        out.write(data, 0, length);
+        out.write(tail);
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * A {@link Chart_RenderTarget} for a TYPE_INT_ARGB or TYPE_INT_RGB image
+ * that writes opaque, non-antialiased rectangles and markers directly into
+ * the int[] backing the image. Everything else (text, general shapes,
+ * translucent paint, transformed or antialiased drawing) is rendered with the
+ * Graphics2D of the image as in {@link Chart_Graphics2DRenderTarget}.
+ *
+ * Direct writes are clipped to the image and to a clip rectangle which can be
+ * set using {@link #setClip(int, int, int, int)} or to match the clip of the
+ * Graphics2D using {@link #clipToGraphics()}.
+ */
+public class Chart_RasterRenderTarget extends Chart_Graphics2DRenderTarget {
+
+    /**
+     * The pixels of the image.
+     */
+    protected final int[] pixels;
+
+    /**
+     * The width of the image.
+     */
+    protected final int width;
+
+    /**
+     * The height of the image.
+     */
+    protected final int height;
+
+    /**
+     * If {@code true} the Graphics2D antialiases, so markers are drawn with it.
+     */
+    protected final boolean antialiased;
+
+    /**
+     * The current paint as an ARGB value.
+     */
+    protected int argb;
+
+    /**
+     * {@code true} if the current paint is opaque.
+     */
+    protected boolean opaque;
+
+    /**
+     * {@code true} if the Graphics2D transform is the identity.
+     */
+    protected boolean identity;
+
+    /**
+     * The inclusive bounds for direct writes.
+     */
+    protected int minCol;
+    protected int minRow;
+    protected int maxCol;
+    protected int maxRow;
+
+    /**
+     * @param bi The image to render to. This must be one for which
+     * {@link #isSupported(BufferedImage)} returns {@code true}.
+     * @param g The graphics of bi.
+     */
+    public Chart_RasterRenderTarget(BufferedImage bi, Graphics2D g) {
+        super(g);
+        this.pixels = ((DataBufferInt) bi.getRaster().getDataBuffer())
+                .getData();
+        this.width = bi.getWidth();
+        this.height = bi.getHeight();
+        this.antialiased = RenderingHints.VALUE_ANTIALIAS_ON.equals(
+                g.getRenderingHint(RenderingHints.KEY_ANTIALIASING));
+        this.identity = g.getTransform().isIdentity();
+        Color c = g.getColor();
+        if (c != null) {
+            argb = c.getRGB();
+            opaque = c.getAlpha() == 255;
+        }
+        clearClip();
+    }
+
+    /**
+     * Creates a view of parent that shares its pixels, Graphics2D and paint,
+     * but has its own clip, so that different views can write to different
+     * parts of the image concurrently.
+     *
+     * @param parent The target to view.
+     */
+    protected Chart_RasterRenderTarget(Chart_RasterRenderTarget parent) {
+        super(parent.g);
+        this.pixels = parent.pixels;
+        this.width = parent.width;
+        this.height = parent.height;
+        this.antialiased = parent.antialiased;
+        this.identity = parent.identity;
+        this.argb = parent.argb;
+        this.opaque = parent.opaque;
+        this.minCol = parent.minCol;
+        this.minRow = parent.minRow;
+        this.maxCol = parent.maxCol;
+        this.maxRow = parent.maxRow;
+    }
+
+    /**
+     * For getting a view of the rows minRow to maxRow (inclusive) of this
+     * target for direct writes. The view shares the pixels and paint of this
+     * target and its clip is the intersection of the clip of this target and
+     * the rows. Views of rows that do not overlap can be written to from
+     * different threads at the same time.
+     *
+     * @param minRow The minimum row.
+     * @param maxRow The maximum row.
+     * @return A view of the rows.
+     */
+    public Chart_RasterRenderTarget getTile(int minRow, int maxRow) {
+        Chart_RasterRenderTarget r = new Chart_RasterRenderTarget(this);
+        r.minRow = Math.max(this.minRow, minRow);
+        r.maxRow = Math.min(this.maxRow, maxRow);
+        return r;
+    }
+
+    /**
+     * @return The minimum row for direct writes.
+     */
+    public int getMinRow() {
+        return minRow;
+    }
+
+    /**
+     * @return The maximum row for direct writes.
+     */
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    /**
+     * @param bi The image to test.
+     * @return {@code true} if bi is TYPE_INT_ARGB or TYPE_INT_RGB and its
+     * pixels are stored in a single int[] with one row after another.
+     */
+    public static boolean isSupported(BufferedImage bi) {
+        int type = bi.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB
+                && type != BufferedImage.TYPE_INT_RGB) {
+            return false;
+        }
+        Raster r = bi.getRaster();
+        if (!(r.getDataBuffer() instanceof DataBufferInt)
+                || r.getDataBuffer().getNumBanks() != 1
+                || !(r.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return false;
+        }
+        SinglePixelPackedSampleModel sm
+                = (SinglePixelPackedSampleModel) r.getSampleModel();
+        return sm.getScanlineStride() == bi.getWidth()
+                && r.getSampleModelTranslateX() == 0
+                && r.getSampleModelTranslateY() == 0;
+    }
+
+    /**
+     * Restricts direct writes to the inclusive bounds given (and the image).
+     *
+     * @param minCol The minimum column.
+     * @param minRow The minimum row.
+     * @param maxCol The maximum column.
+     * @param maxRow The maximum row.
+     */
+    public void setClip(int minCol, int minRow, int maxCol, int maxRow) {
+        this.minCol = Math.max(0, minCol);
+        this.minRow = Math.max(0, minRow);
+        this.maxCol = Math.min(width - 1, maxCol);
+        this.maxRow = Math.min(height - 1, maxRow);
+    }
+
+    /**
+     * Restricts direct writes to the image only.
+     */
+    public final void clearClip() {
+        minCol = 0;
+        minRow = 0;
+        maxCol = width - 1;
+        maxRow = height - 1;
+    }
+
+    /**
+     * Restricts direct writes to the clip of the Graphics2D (and the image),
+     * so that they are clipped as what is drawn with the Graphics2D is.
+     *
+     * @return {@code false} if the clip of the Graphics2D is not a rectangle
+     * of whole pixels, in which case the clip is unchanged and direct writes
+     * can not be clipped in the same way.
+     */
+    public boolean clipToGraphics() {
+        Shape s = g.getClip();
+        if (s == null) {
+            clearClip();
+            return true;
+        }
+        if (!(s instanceof Rectangle2D)) {
+            return false;
+        }
+        Rectangle2D b = (Rectangle2D) s;
+        double x = b.getX();
+        double y = b.getY();
+        double w = b.getWidth();
+        double h = b.getHeight();
+        if (x != Math.rint(x) || y != Math.rint(y) || w != Math.rint(w)
+                || h != Math.rint(h)) {
+            return false;
+        }
+        setClip((int) x, (int) y, (int) (x + w) - 1, (int) (y + h) - 1);
+        return true;
+    }
+
+    /**
+     * @return {@code true} if markers can be written directly.
+     */
+    public boolean isDirect() {
+        return opaque && identity && !antialiased;
+    }
+
+    @Override
+    public void setPaint(Color c) {
+        super.setPaint(c);
+        argb = c.getRGB();
+        opaque = c.getAlpha() == 255;
+    }
+
+    @Override
+    public void transform(AffineTransform t) {
+        super.transform(t);
+        identity = g.getTransform().isIdentity();
+    }
+
+    @Override
+    public void setTransform(AffineTransform t) {
+        super.setTransform(t);
+        identity = t.isIdentity();
+    }
+
+    @Override
+    public void fillRect(int col, int row, int w, int h) {
+        if (!(opaque && identity)) {
+            super.fillRect(col, row, w, h);
+            return;
+        }
+        int c0 = Math.max(col, minCol);
+        int r0 = Math.max(row, minRow);
+        int c1 = Math.min(col + w - 1, maxCol);
+        int r1 = Math.min(row + h - 1, maxRow);
+        if (c0 > c1 || r0 > r1) {
+            return;
+        }
+        int[] p = pixels;
+        int v = argb;
+        for (int r = r0; r <= r1; r++) {
+            int o = r * width;
+            Arrays.fill(p, o + c0, o + c1 + 1, v);
+        }
+    }
+
+    /**
+     * Writes n markers directly into the pixels. This should only be called if
+     * {@link #isDirect()} returns {@code true}.
+     *
+     * @param cols The columns of the markers.
+     * @param rows The rows of the markers.
+     * @param n The number of markers.
+     * @param marker The shape of marker.
+     * @param l The distance in pixels from the centre to the edge of each
+     * marker.
+     */
+    public void drawMarkers(int[] cols, int[] rows, int n, Chart_Marker marker,
+            int l) {
+        for (int i = 0; i < n; i++) {
+            drawMarker(cols[i], rows[i], marker, l);
+        }
+    }
+
+    /**
+     * Writes a marker directly into the pixels. This should only be called if
+     * {@link #isDirect()} returns {@code true}.
+     *
+     * @param c The column of the centre of the marker.
+     * @param r The row of the centre of the marker.
+     * @param marker The shape of marker.
+     * @param l The distance in pixels from the centre to the edge of the
+     * marker.
+     */
+    public void drawMarker(int c, int r, Chart_Marker marker, int l) {
+        if (c + l < minCol || c - l > maxCol || r + l < minRow
+                || r - l > maxRow) {
+            return;
+        }
+        switch (marker) {
+            case CROSS:
+                for (int d = -l; d <= l; d++) {
+                    set(c + d, r + d);
+                    set(c + d, r - d);
+                }
+                break;
+            case PLUS:
+                for (int d = -l; d <= l; d++) {
+                    set(c + d, r);
+                    set(c, r + d);
+                }
+                break;
+            case DOT:
+                set(c, r);
+                break;
+            default:
+                for (int d = -l; d <= l; d++) {
+                    set(c + d, r - l);
+                    set(c + d, r + l);
+                    set(c - l, r + d);
+                    set(c + l, r + d);
+                }
+        }
+    }
+
+    /**
+     * Sets the pixel at (col, row) to {@link #argb} if it is within the clip.
+     */
+    private void set(int col, int row) {
+        if (col >= minCol && col <= maxCol && row >= minRow && row <= maxRow) {
+            pixels[row * width + col] = argb;
+        }
+    }
+}
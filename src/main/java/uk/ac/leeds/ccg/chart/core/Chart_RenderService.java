@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import uk.ac.leeds.ccg.chart.execution.Chart_JfrQueueWaitEvent;
+
+/**
+ * A service that renders and writes charts on a fixed size pool of threads
+ * with a bounded queue. When the queue is full {@link #submit(Chart)} blocks
+ * until there is room, so producing thousands of charts keeps all the
+ * threads busy without holding all the charts in memory at once. A single
+ * service can be shared instead of each chart having its own executor.
+ */
+public class Chart_RenderService implements AutoCloseable {
+
+    /**
+     * The shared instance, created on first use.
+     */
+    private static Chart_RenderService shared;
+
+    /**
+     * The result of rendering and writing a chart.
+     */
+    public static class Result {
+
+        /**
+         * The chart.
+         */
+        public final Chart chart;
+
+        /**
+         * The rendered image or {@code null} if it was returned to the
+         * chart's {@link Chart#getImagePool()}.
+         */
+        public final BufferedImage image;
+
+        /**
+         * The file written.
+         */
+        public final Path file;
+
+        /**
+         * The number of bytes written or {@code -1} if rendering failed.
+         */
+        public final long bytes;
+
+        /**
+         * Create a new instance.
+         *
+         * @param chart What {@link #chart} is set to.
+         * @param image What {@link #image} is set to.
+         * @param file What {@link #file} is set to.
+         * @param bytes What {@link #bytes} is set to.
+         */
+        public Result(Chart chart, BufferedImage image, Path file, long bytes) {
+            this.chart = chart;
+            this.image = image;
+            this.file = file;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The pool of threads.
+     */
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Permits for the charts that can be running or queued.
+     */
+    private final Semaphore permits;
+
+    /**
+     * The number of threads.
+     */
+    private final int threads;
+
+    /**
+     * The number of charts that can be queued.
+     */
+    private final int queueCapacity;
+
+    /**
+     * The number of charts completed and failed.
+     */
+    private final AtomicLong completed;
+    private final AtomicLong failed;
+
+    /**
+     * Create a new instance with a thread for each available processor and a
+     * queue four times that size.
+     */
+    public Chart_RenderService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new instance with a queue four times the number of threads.
+     *
+     * @param threads What {@link #threads} is set to.
+     */
+    public Chart_RenderService(int threads) {
+        this(threads, threads * 4);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param threads What {@link #threads} is set to.
+     * @param queueCapacity What {@link #queueCapacity} is set to.
+     */
+    public Chart_RenderService(int threads, int queueCapacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads " + threads + " < 1");
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity " + queueCapacity
+                    + " < 0");
+        }
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        permits = new Semaphore(threads + queueCapacity, true);
+        completed = new AtomicLong();
+        failed = new AtomicLong();
+        AtomicInteger n = new AtomicInteger();
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r, "chart-render-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        // The permits bound the charts submitted. The queue is not bounded
+        // as it also holds the writes that Chart#run() hands over, and the
+        // number of those is bounded by the memory admission.
+        pool = new ThreadPoolExecutor(threads, threads, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), tf);
+    }
+
+    /**
+     * @return The shared instance which has a thread for each available
+     * processor.
+     */
+    public static synchronized Chart_RenderService getShared() {
+        if (shared == null || shared.isShutdown()) {
+            shared = new Chart_RenderService();
+        }
+        return shared;
+    }
+
+    /**
+     * Submits chart to be rendered and written with
+     * {@link Chart#renderAndWrite()}. This blocks while the queue is full.
+     *
+     * @param chart The chart to render and write.
+     * @return A future for the result.
+     * @throws InterruptedException If interrupted waiting for room in the
+     * queue.
+     * @throws RejectedExecutionException If the service is shut down.
+     */
+    public Future<Result> submit(Chart chart) throws InterruptedException {
+        permits.acquire();
+        Chart_JfrQueueWaitEvent q = new Chart_JfrQueueWaitEvent();
+        q.begin();
+        try {
+            return pool.submit(() -> {
+                try {
+                    if (q.shouldCommit()) {
+                        q.task = "render";
+                        chart.setChart(q, chart.imageWidth, chart.imageHeight);
+                        q.commit();
+                    }
+                    long bytes = chart.renderAndWrite();
+                    completed.incrementAndGet();
+                    return new Result(chart, chart.getBi(), chart.getFile(),
+                            bytes);
+                } catch (Exception | Error e) {
+                    failed.incrementAndGet();
+                    throw e;
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The pool of threads, which {@link Chart#run()} uses to write
+     * images by default.
+     */
+    public ExecutorService getExecutorService() {
+        return pool;
+    }
+
+    /**
+     * @return {@link #threads}.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return {@link #queueCapacity}.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return The number of charts and writes waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * @return The number of charts being rendered or written.
+     */
+    public int getActive() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * @return The number of charts rendered and written.
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return The number of charts that failed.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return {@code true} if the service is shut down.
+     */
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * Stops accepting charts. Those submitted are still rendered.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Waits for submitted charts to be rendered.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of timeout.
+     * @return {@code true} if all were rendered.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Shuts down and waits for submitted charts to be rendered.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            while (!awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+
+/**
+ * Interface for what the drawing primitives of a {@link Chart} render to.
+ */
+public interface Chart_RenderTarget {
+
+    public void setPaint(Color c);
+
+    public void draw(Shape s);
+
+    public void fill(Shape s);
+
+    public void fillRect(int col, int row, int width, int height);
+
+    public void drawString(String text, int col, int row);
+
+    public void transform(AffineTransform t);
+
+    public void setTransform(AffineTransform t);
+
+    public AffineTransform getTransform();
+}
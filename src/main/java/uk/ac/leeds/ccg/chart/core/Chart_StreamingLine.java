@@ -0,0 +1,666 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import uk.ac.leeds.ccg.chart.data.Chart_LineData;
+import uk.ac.leeds.ccg.chart.data.Chart_RingSeries;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+
+/**
+ * A line chart of a {@link Chart_RingSeries} for monitoring a feed of data
+ * where points are appended with {@link #add(double, double)} and the chart
+ * is brought up to date with {@link #update()}.
+ *
+ * Each column of the data area is a fixed {@link #xPerColumn} of x, so the
+ * data area shows a window of x values that scrolls left a whole number of
+ * columns as points are appended beyond it. An update scrolls the pixels of
+ * the data area already drawn, draws the lines to the points appended since
+ * the last update and redraws the X axis ticks, so it takes time in
+ * proportion to the number of points appended rather than the number in the
+ * window. The chart is only redrawn in full with {@link #redraw()} if the Y
+ * axis range no longer fits the points in the window, or the X axis tick
+ * labels are wider than those laid out, or the window scrolls by more than
+ * its width.
+ *
+ * A redraw also draws a background image of the chart without the X axis
+ * ticks and data from which the pixels uncovered by an update are restored.
+ * Lines are drawn clipped to the data area without antialiasing so the chart
+ * after an update is the same as if it were redrawn in full.
+ */
+public class Chart_StreamingLine extends Chart_Line {
+
+    /**
+     * The series drawn.
+     */
+    protected Chart_RingSeries series;
+
+    /**
+     * The colour of the lines.
+     */
+    protected Color colour = Color.BLUE;
+
+    /**
+     * The amount of x for each column of the data area.
+     */
+    protected double xPerColumn;
+
+    /**
+     * The distance between X axis ticks which are at multiples of this.
+     */
+    protected BigDecimal xTick;
+
+    /**
+     * The fraction of the range of the y values in the window added above
+     * and below it for the Y axis, so the Y axis does not change for every
+     * new extreme.
+     */
+    protected double headroom = 0.1d;
+
+    /**
+     * If the range of the y values in the window is less than this fraction
+     * of the range of the Y axis then the chart is redrawn in full to fit
+     * the Y axis to it.
+     */
+    protected double shrink = 0.25d;
+
+    /**
+     * The column of x which is at {@link #dataStartCol} where the column of x
+     * is {@code Math.floor(x / xPerColumn)}.
+     */
+    protected long firstColumn;
+
+    /**
+     * Set {@code true} when {@link #firstColumn} is set from the first point.
+     */
+    protected boolean started;
+
+    /**
+     * The minimum of the Y axis.
+     */
+    protected double axisMinY;
+
+    /**
+     * The maximum of the Y axis.
+     */
+    protected double axisMaxY;
+
+    /**
+     * The maximum width of the X axis tick labels laid out for.
+     */
+    protected int xLabelHeight;
+
+    /**
+     * The row of the X axis.
+     */
+    protected int xAxisRow;
+
+    /**
+     * The row after the last of the X axis ticks and labels.
+     */
+    protected int xAxisEndRow;
+
+    /**
+     * The chart drawn without X axis ticks and data.
+     */
+    protected BufferedImage background;
+
+    /**
+     * Set {@code true} while drawing {@link #background}.
+     */
+    protected boolean drawingBackground;
+
+    /**
+     * The number of points appended to {@link #series} that have been drawn.
+     */
+    protected long drawnCount;
+
+    /**
+     * The x value of the last point drawn.
+     */
+    protected double lastX;
+
+    /**
+     * The y value of the last point drawn.
+     */
+    protected double lastY;
+
+    /**
+     * The number of times the chart has been redrawn in full.
+     */
+    protected long redrawCount;
+
+    /**
+     * The number of times the chart has been updated without being redrawn.
+     */
+    protected long scrollCount;
+
+    public Chart_StreamingLine(Generic_Environment e) {
+        super(e);
+    }
+
+    /**
+     * @param e The Generic_Environment.
+     * @param es The ExecutorService.
+     * @param f The Path.
+     * @param format The format.
+     * @param title The title.
+     * @param dataWidth The data width.
+     * @param dataHeight The data height.
+     * @param xAxisLabel The x axis label.
+     * @param yAxisLabel The y axis label.
+     * @param xSpan The range of x across the data area.
+     * @param capacity The capacity of the series which should be enough for
+     * the points in the window.
+     * @param oomx The Order of Magnitude for rounding precision of x.
+     * @param oomy The Order of Magnitude for rounding precision of y.
+     * @param rm The RoundingMode.
+     */
+    public Chart_StreamingLine(Generic_Environment e, ExecutorService es,
+            Path f, String format, String title, int dataWidth,
+            int dataHeight, String xAxisLabel, String yAxisLabel, double xSpan,
+            int capacity, int oomx, int oomy, RoundingMode rm) {
+        super(e);
+        series = new Chart_RingSeries(capacity);
+        xPerColumn = xSpan / dataWidth;
+        xTick = getNiceIncrement(xPerColumn * 50);
+        init(es, f, format, title, dataWidth, dataHeight, xAxisLabel,
+                yAxisLabel, false, oomx, oomy, rm);
+        setData(getWindowData());
+    }
+
+    /**
+     * @param d A positive number.
+     * @return The smallest number not less than d which is 1, 2 or 5 times a
+     * power of 10.
+     */
+    public static BigDecimal getNiceIncrement(double d) {
+        int oom = (int) Math.floor(Math.log10(d));
+        BigDecimal p = BigDecimal.ONE.scaleByPowerOfTen(oom);
+        for (int m : new int[]{1, 2, 5, 10}) {
+            BigDecimal r = p.multiply(BigDecimal.valueOf(m));
+            if (r.doubleValue() >= d) {
+                return r;
+            }
+        }
+        return p.multiply(BigDecimal.TEN);
+    }
+
+    /**
+     * Appends a point to {@link #series}. It is drawn by the next
+     * {@link #update()}.
+     *
+     * @param x The x value which must not be less than that of the last point.
+     * @param y The y value.
+     * @return The sequence number of the point.
+     */
+    public long add(double x, double y) {
+        return series.add(x, y);
+    }
+
+    /**
+     * Brings the chart up to date with the points appended since the last
+     * update, scrolling it if needed, or redrawing it if the axes have to
+     * change.
+     *
+     * @return The updated image which is also {@link #bi}. If the chart is
+     * redrawn this is a new image.
+     */
+    public BufferedImage update() {
+        long shift = scroll();
+        if (bi == null || background == null || shift > dataWidth
+                || drawnCount < series.getFirstSequence()
+                || isRedrawNeeded(shift)) {
+            return redraw();
+        }
+        Graphics2D g = bi.createGraphics();
+        g2 = g;
+        try {
+            if (shift > 0) {
+                int s = (int) shift;
+                int h = dataHeight + 1;
+                g.copyArea(dataStartCol + s, dataStartRow, dataWidth + 1 - s,
+                        h, -s, 0);
+                restore(dataEndCol + 1 - s, dataStartRow, s, h);
+                restore(0, dataEndRow + 1, bi.getWidth(),
+                        xAxisEndRow - dataEndRow - 1);
+                Shape clip = g.getClip();
+                g.clipRect(0, dataEndRow + 1, bi.getWidth(),
+                        xAxisEndRow - dataEndRow - 1);
+                drawXAxisTicks(true);
+                g.setClip(clip);
+            }
+            drawClipped(this::drawNewPoints);
+        } finally {
+            g.dispose();
+            g2 = null;
+        }
+        scrollCount++;
+        return bi;
+    }
+
+    /**
+     * Redraws the chart in full for the points in the window, fitting the Y
+     * axis to them, and draws {@link #background}.
+     *
+     * @return The new image which is also {@link #bi}.
+     */
+    public BufferedImage redraw() {
+        scroll();
+        setData(getWindowData());
+        BufferedImage oldBi = bi;
+        BufferedImage oldBackground = background;
+        render();
+        background = newImage(bi.getWidth(), bi.getHeight());
+        layout();
+        Graphics2D g = background.createGraphics();
+        drawingBackground = true;
+        try {
+            draw(g);
+        } finally {
+            drawingBackground = false;
+            g.dispose();
+            g2 = null;
+        }
+        recycle(oldBi);
+        recycle(oldBackground);
+        drawnCount = series.getCount();
+        if (series.size() > 0) {
+            lastX = series.getLastX();
+            lastY = series.getLastY();
+        }
+        redrawCount++;
+        return bi;
+    }
+
+    /**
+     * Scrolls the window so the last point is in it and removes the points
+     * before it from {@link #series} (other than the last of them).
+     *
+     * @return The number of columns scrolled.
+     */
+    protected long scroll() {
+        if (series.size() == 0) {
+            return 0L;
+        }
+        if (!started) {
+            firstColumn = getColumn(series.getX(0));
+            started = true;
+        }
+        long first = Math.max(firstColumn,
+                getColumn(series.getLastX()) - dataWidth);
+        long r = first - firstColumn;
+        firstColumn = first;
+        series.removeBefore(getMinX());
+        return r;
+    }
+
+    /**
+     * @param shift The number of columns scrolled.
+     * @return {@code true} if the y values in the window are outside the Y
+     * axis or in much less of it than they could be, or if the X axis tick
+     * labels are wider than laid out for.
+     */
+    protected boolean isRedrawNeeded(long shift) {
+        double min = series.getMinY();
+        double max = series.getMaxY();
+        if (min < axisMinY || max > axisMaxY) {
+            return true;
+        }
+        if (max > min && max - min < shrink * (axisMaxY - axisMinY)) {
+            return true;
+        }
+        return shift > 0 && drawXAxisTicks(false) > xLabelHeight;
+    }
+
+    /**
+     * Restores a rectangle of {@link #bi} from {@link #background}.
+     *
+     * @param col The first column.
+     * @param row The first row.
+     * @param width The width.
+     * @param height The height.
+     */
+    protected void restore(int col, int row, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        WritableRaster r = bi.getRaster();
+        r.setRect(background.getRaster().createChild(col, row, width, height,
+                col, row, null));
+    }
+
+    /**
+     * @param x The x value.
+     * @return {@code Math.floor(x / xPerColumn)}.
+     */
+    protected long getColumn(double x) {
+        return (long) Math.floor(x / xPerColumn);
+    }
+
+    /**
+     * @return The minimum x value in the window.
+     */
+    public double getMinX() {
+        return firstColumn * xPerColumn;
+    }
+
+    /**
+     * @return The x value after the window.
+     */
+    public double getMaxX() {
+        return (firstColumn + dataWidth + 1) * xPerColumn;
+    }
+
+    /**
+     * The column is that of x relative to {@link #firstColumn} so that it
+     * changes by whole columns as the window scrolls.
+     *
+     * @param x The x value.
+     * @return the column in the image for the data with value x.
+     */
+    @Override
+    public int getCol(double x) {
+        return (int) (getColumn(x) - firstColumn) + dataStartCol;
+    }
+
+    /**
+     * Sets {@link #axisMinY} and {@link #axisMaxY} to fit the y values in the
+     * window with {@link #headroom} and rounded out to a power of 10 less
+     * than the range.
+     *
+     * @return The data for the window with no series.
+     */
+    protected Chart_LineData getWindowData() {
+        double min = series.getMinY();
+        double max = series.getMaxY();
+        if (series.size() == 0) {
+            min = 0d;
+            max = 1d;
+        }
+        double range = max - min;
+        if (range == 0d) {
+            range = min == 0d ? 1d : Math.abs(min);
+        }
+        min -= range * headroom;
+        max += range * headroom;
+        BigDecimal step = BigDecimal.ONE.scaleByPowerOfTen(
+                (int) Math.floor(Math.log10(max - min)));
+        BigDecimal minbd = BigDecimal.valueOf(min).divide(step, 0,
+                RoundingMode.FLOOR).multiply(step);
+        BigDecimal maxbd = BigDecimal.valueOf(max).divide(step, 0,
+                RoundingMode.CEILING).multiply(step);
+        axisMinY = minbd.doubleValue();
+        axisMaxY = maxbd.doubleValue();
+        Chart_LineData r = new Chart_LineData();
+        r.minX = BigRational.valueOf(getMinX());
+        r.maxX = BigRational.valueOf(getMaxX());
+        r.minY = BigRational.valueOf(minbd);
+        r.maxY = BigRational.valueOf(maxbd);
+        return r;
+    }
+
+    /**
+     * Draws the X axis as {@link Chart_Line#drawXAxis} does but with a tick
+     * at each multiple of {@link #xTick} in the window labelled by
+     * {@link #getXTickLabel(BigDecimal)}. The labels are laid out for a
+     * height of {@link #xLabelHeight}, which only grows, so the layout is
+     * the same for each window while the labels fit.
+     *
+     * @param textHeight -
+     * @param scaleTickLength -
+     * @param scaleTickAndTextSeparation -
+     * @param partTitleGap -
+     * @param seperationDistanceOfAxisAndData -
+     * @return an int[] result for setting display parameters where: result[0]
+     * = xAxisExtraWidthLeft; result[1] = xAxisExtraWidthRight; result[2] =
+     * xAxisExtraHeightBottom.
+     */
+    @Override
+    public int[] drawXAxis(int textHeight, int scaleTickLength,
+            int scaleTickAndTextSeparation, int partTitleGap,
+            int seperationDistanceOfAxisAndData) {
+        int[] result = new int[3];
+        setPaint(Color.GRAY);
+        int row = dataEndRow + seperationDistanceOfAxisAndData;
+        xAxisRow = row;
+        draw(new Line2D.Double(dataStartCol, row, dataEndCol, row));
+        if (!drawingBackground) {
+            xLabelHeight = Math.max(xLabelHeight, drawXAxisTicks(true));
+        }
+        int textRow = row + scaleTickLength + scaleTickAndTextSeparation
+                + xLabelHeight;
+        // Leave a row for text that overhangs the labels.
+        xAxisEndRow = textRow + 2;
+        textRow += partTitleGap + textHeight;
+        setPaint(Color.BLACK);
+        int textWidth = getTextWidth(xAxisLabel);
+        int middleCol = (dataEndCol - dataStartCol) / 2 + dataStartCol;
+        drawString(xAxisLabel, middleCol - textWidth / 2, textRow);
+        result[0] = textHeight;
+        result[1] = Math.max(textHeight / 2,
+                middleCol + textWidth / 2 + 1 - dataEndCol);
+        result[2] = seperationDistanceOfAxisAndData + scaleTickLength
+                + scaleTickAndTextSeparation + xLabelHeight + partTitleGap
+                + textHeight + textHeight + 2;
+        return result;
+    }
+
+    /**
+     * Draws or measures the X axis ticks and labels in the window.
+     *
+     * @param draw If {@code false} the labels are only measured.
+     * @return The maximum width of the labels.
+     */
+    protected int drawXAxisTicks(boolean draw) {
+        int th = getTextHeight();
+        int stl = getDefaultScaleTickLength();
+        int row = xAxisRow;
+        int textRow = row + stl + getDefaultScaleTickAndTextSeparation();
+        double angle = 3.0d * Math.PI / 2.0d;
+        int r = 0;
+        if (draw) {
+            setPaint(Color.GRAY);
+        }
+        long k = (long) Math.floor(getMinX() / xTick.doubleValue());
+        while (true) {
+            BigDecimal x = xTick.multiply(BigDecimal.valueOf(k++));
+            int col = getCol(x.doubleValue());
+            if (col > dataEndCol) {
+                break;
+            }
+            if (col >= dataStartCol) {
+                String text = getXTickLabel(x);
+                int textWidth = getTextWidth(text);
+                if (draw) {
+                    draw(new Line2D.Double(col, row, col, row + stl));
+                    writeText(text, angle, col + (th / 3),
+                            textRow + textWidth);
+                }
+                r = Math.max(r, textWidth);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param x The x value of a tick.
+     * @return The label for the tick.
+     */
+    protected String getXTickLabel(BigDecimal x) {
+        return x.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Draws lines joining the points of {@link #series} clipped to the data
+     * area. Nothing is drawn while drawing {@link #background}.
+     */
+    @Override
+    public void drawData() {
+        if (drawingBackground || series.size() < 2) {
+            return;
+        }
+        drawClipped(() -> {
+            setPaint(colour);
+            int col0 = getCol(series.getX(0));
+            int row0 = getRow(series.getY(0));
+            for (int i = 1; i < series.size(); i++) {
+                int col = getCol(series.getX(i));
+                int row = getRow(series.getY(i));
+                draw(new Line2D.Double(col0, row0, col, row));
+                col0 = col;
+                row0 = row;
+            }
+        });
+    }
+
+    /**
+     * Draws lines joining the last point drawn and the points appended since.
+     */
+    protected void drawNewPoints() {
+        long first = series.getFirstSequence();
+        int i = (int) (drawnCount - first);
+        if (i >= series.size()) {
+            return;
+        }
+        setPaint(colour);
+        int col0;
+        int row0;
+        if (drawnCount == 0L) {
+            col0 = getCol(series.getX(0));
+            row0 = getRow(series.getY(0));
+            i++;
+        } else {
+            col0 = getCol(lastX);
+            row0 = getRow(lastY);
+        }
+        for (; i < series.size(); i++) {
+            int col = getCol(series.getX(i));
+            int row = getRow(series.getY(i));
+            draw(new Line2D.Double(col0, row0, col, row));
+            col0 = col;
+            row0 = row;
+        }
+        drawnCount = series.getCount();
+        lastX = series.getLastX();
+        lastY = series.getLastY();
+    }
+
+    /**
+     * Runs r with drawing clipped to the data area.
+     *
+     * @param r What to run.
+     */
+    protected void drawClipped(Runnable r) {
+        Graphics2D g = g2;
+        Shape clip = null;
+        if (g != null) {
+            clip = g.getClip();
+            g.clipRect(dataStartCol, dataStartRow, dataWidth + 1,
+                    dataHeight + 1);
+        }
+        Chart_RenderTarget t = getRenderTarget();
+        Chart_RasterRenderTarget raster = null;
+        if (t instanceof Chart_RasterRenderTarget) {
+            raster = (Chart_RasterRenderTarget) t;
+            raster.setClip(dataStartCol, dataStartRow, dataEndCol, dataEndRow);
+        }
+        try {
+            r.run();
+        } finally {
+            if (g != null) {
+                g.setClip(clip);
+            }
+            if (raster != null) {
+                raster.clearClip();
+            }
+        }
+    }
+
+    /**
+     * @return {@link #series}.
+     */
+    public Chart_RingSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * @return {@link #colour}.
+     */
+    public Color getColour() {
+        return colour;
+    }
+
+    /**
+     * @param colour What {@link #colour} is set to.
+     */
+    public void setColour(Color colour) {
+        this.colour = colour;
+    }
+
+    /**
+     * @return {@link #xTick}.
+     */
+    public BigDecimal getXTick() {
+        return xTick;
+    }
+
+    /**
+     * @param xTick What {@link #xTick} is set to. The ticks should be more
+     * than the text height apart. This takes effect at the next redraw.
+     */
+    public void setXTick(BigDecimal xTick) {
+        this.xTick = xTick;
+    }
+
+    /**
+     * @return {@link #headroom}.
+     */
+    public double getHeadroom() {
+        return headroom;
+    }
+
+    /**
+     * @param headroom What {@link #headroom} is set to.
+     */
+    public void setHeadroom(double headroom) {
+        this.headroom = headroom;
+    }
+
+    /**
+     * @return {@link #redrawCount}.
+     */
+    public long getRedrawCount() {
+        return redrawCount;
+    }
+
+    /**
+     * @return {@link #scrollCount}.
+     */
+    public long getScrollCount() {
+        return scrollCount;
+    }
+}
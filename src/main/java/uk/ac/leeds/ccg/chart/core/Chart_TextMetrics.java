@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Canvas;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe cache of {@link FontMetrics} for each font and of the widths
+ * of text measured with them, so that the same tick labels, titles and legend
+ * entries are not measured again for each axis and each chart. The text
+ * widths are kept in a number of segments, each locked separately and each
+ * dropping its least recently used widths when it is full. Text heights are
+ * those of the font so they come from the cached metrics.
+ */
+public class Chart_TextMetrics {
+
+    /**
+     * The default maximum number of text widths cached.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * The number of segments of {@link #widths}.
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * The shared instance, created on first use.
+     */
+    private static Chart_TextMetrics shared;
+
+    /**
+     * The key of some text measured with some metrics. Metrics are compared
+     * by identity; those from {@link #getFontMetrics(Font)} are the same
+     * object for the same font.
+     */
+    private static class Key {
+
+        final FontMetrics metrics;
+        final String text;
+
+        Key(FontMetrics metrics, String text) {
+            this.metrics = metrics;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof Key k) {
+                return metrics == k.metrics && text.equals(k.text);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(metrics) * 31 + text.hashCode();
+        }
+    }
+
+    /**
+     * A segment of {@link #widths} which drops its least recently used entry
+     * when it would otherwise exceed its capacity.
+     */
+    private static class Segment extends LinkedHashMap<Key, Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Integer> e) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * For getting metrics of fonts.
+     */
+    private final Canvas canvas = new Canvas();
+
+    /**
+     * The metrics of each font.
+     */
+    private final ConcurrentHashMap<Font, FontMetrics> metrics
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The cached text widths.
+     */
+    private final Segment[] widths;
+
+    /**
+     * Counts of metrics and widths found in the cache (hits) and those that
+     * were not (misses).
+     */
+    private final LongAdder metricsHits = new LongAdder();
+    private final LongAdder metricsMisses = new LongAdder();
+    private final LongAdder widthHits = new LongAdder();
+    private final LongAdder widthMisses = new LongAdder();
+
+    /**
+     * Create a new instance that caches up to {@link #DEFAULT_CAPACITY} text
+     * widths.
+     */
+    public Chart_TextMetrics() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param capacity The maximum number of text widths cached.
+     */
+    public Chart_TextMetrics(int capacity) {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("capacity " + capacity + " < "
+                    + SEGMENTS);
+        }
+        widths = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            widths[i] = new Segment(capacity / SEGMENTS);
+        }
+    }
+
+    /**
+     * @return The shared instance.
+     */
+    public static synchronized Chart_TextMetrics getShared() {
+        if (shared == null) {
+            shared = new Chart_TextMetrics();
+        }
+        return shared;
+    }
+
+    /**
+     * @param font The font.
+     * @return The metrics of font, which are the same object each time for
+     * the same font.
+     */
+    public FontMetrics getFontMetrics(Font font) {
+        FontMetrics r = metrics.get(font);
+        if (r != null) {
+            metricsHits.increment();
+            return r;
+        }
+        metricsMisses.increment();
+        return metrics.computeIfAbsent(font, canvas::getFontMetrics);
+    }
+
+    /**
+     * @param fm The metrics to measure with.
+     * @param text The text to measure.
+     * @return The width of text.
+     */
+    public int getWidth(FontMetrics fm, String text) {
+        Key k = new Key(fm, text);
+        Segment s = widths[(k.hashCode() & 0x7fffffff) % SEGMENTS];
+        Integer r;
+        synchronized (s) {
+            r = s.get(k);
+        }
+        if (r != null) {
+            widthHits.increment();
+            return r;
+        }
+        widthMisses.increment();
+        int w = fm.stringWidth(text);
+        synchronized (s) {
+            s.put(k, w);
+        }
+        return w;
+    }
+
+    /**
+     * @param font The font.
+     * @return The height of text in font.
+     */
+    public int getHeight(Font font) {
+        return getFontMetrics(font).getHeight();
+    }
+
+    /**
+     * @return The number of text widths cached.
+     */
+    public int size() {
+        int r = 0;
+        for (Segment s : widths) {
+            synchronized (s) {
+                r += s.size();
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return The number of metrics found in the cache.
+     */
+    public long getMetricsHits() {
+        return metricsHits.sum();
+    }
+
+    /**
+     * @return The number of metrics not found in the cache.
+     */
+    public long getMetricsMisses() {
+        return metricsMisses.sum();
+    }
+
+    /**
+     * @return The fraction of metrics found in the cache.
+     */
+    public double getMetricsHitRatio() {
+        return getHitRatio(metricsHits.sum(), metricsMisses.sum());
+    }
+
+    /**
+     * @return The number of text widths found in the cache.
+     */
+    public long getWidthHits() {
+        return widthHits.sum();
+    }
+
+    /**
+     * @return The number of text widths not found in the cache.
+     */
+    public long getWidthMisses() {
+        return widthMisses.sum();
+    }
+
+    /**
+     * @return The fraction of text widths found in the cache.
+     */
+    public double getWidthHitRatio() {
+        return getHitRatio(widthHits.sum(), widthMisses.sum());
+    }
+
+    private static double getHitRatio(long hits, long misses) {
+        long n = hits + misses;
+        return n == 0 ? 0d : hits / (double) n;
+    }
+
+    /**
+     * Drops all cached metrics and text widths.
+     */
+    public void clear() {
+        metrics.clear();
+        for (Segment s : widths) {
+            synchronized (s) {
+                s.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(fonts=" + metrics.size()
+                + ", widths=" + size() + ", metricsHits=" + getMetricsHits()
+                + ", metricsMisses=" + getMetricsMisses() + ", widthHits="
+                + getWidthHits() + ", widthMisses=" + getWidthMisses() + ")";
+    }
+}
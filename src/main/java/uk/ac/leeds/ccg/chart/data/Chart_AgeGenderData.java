@@ -49,4 +49,9 @@ public class Chart_AgeGenderData extends Chart_Data {
         fss = new TreeMap<>();
         mss = new TreeMap<>();
     }
+
+    @Override
+    public long getPointCount() {
+        return (long) female.size() + male.size();
+    }
 }
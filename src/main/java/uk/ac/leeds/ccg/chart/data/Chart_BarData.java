@@ -48,4 +48,17 @@ public class Chart_BarData extends Chart_Data {
         centres = new TreeMap<>();
         mins = new TreeMap<>();
     }
+
+    /**
+     * @return The number of values binned into {@link #counts} or if there
+     * are none, the number of bars in {@link #map}.
+     */
+    @Override
+    public long getPointCount() {
+        long n = 0L;
+        for (Integer c : counts.values()) {
+            n += c;
+        }
+        return n == 0L ? map.size() : n;
+    }
 }
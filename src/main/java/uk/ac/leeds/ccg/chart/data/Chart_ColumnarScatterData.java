@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Scatter data stored in growable primitive arrays rather than in
+ * {@link #data}. Each point takes 24 bytes (an id and an x and y value). A
+ * map from ids to indexes is only built if {@link #indexOf(long)} is called
+ * or {@link #checkDuplicates} is set, so by default duplicate ids are not
+ * checked for.
+ *
+ * {@link #data} is left empty. Points added with
+ * {@link #add(Chart_ID, Chart_Point)} are converted to doubles.
+ */
+public class Chart_ColumnarScatterData extends Chart_ScatterData {
+
+    /**
+     * The default initial capacity.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The maximum length of {@link #index}, which is kept at most half full,
+     * so at most half this many points can be indexed.
+     */
+    public static final int MAX_INDEX_LENGTH = 1 << 30;
+
+    /**
+     * The x values. Only the first {@link #size} are points.
+     */
+    protected double[] xs;
+
+    /**
+     * The y values. Only the first {@link #size} are points.
+     */
+    protected double[] ys;
+
+    /**
+     * The ids. Only the first {@link #size} are points.
+     */
+    protected long[] ids;
+
+    /**
+     * The number of points.
+     */
+    protected int size;
+
+    /**
+     * The minimum and maximum values as doubles.
+     */
+    protected double xMin = Double.POSITIVE_INFINITY;
+    protected double xMax = Double.NEGATIVE_INFINITY;
+    protected double yMin = Double.POSITIVE_INFINITY;
+    protected double yMax = Double.NEGATIVE_INFINITY;
+
+    /**
+     * An open addressing hash table of ids for {@link #indexOf(long)}. Each
+     * slot holds an index + 1 into {@link #ids}, or 0 if it is empty. This is
+     * null until it is needed.
+     */
+    private int[] index;
+
+    /**
+     * Create a new instance.
+     */
+    public Chart_ColumnarScatterData() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The initial capacity.
+     */
+    public Chart_ColumnarScatterData(int capacity) {
+        super();
+        checkDuplicates = false;
+        xs = new double[capacity];
+        ys = new double[capacity];
+        ids = new long[capacity];
+    }
+
+    /**
+     * Creates a new instance which uses rather than copies the arrays given.
+     *
+     * @param ids What {@link #ids} is set to.
+     * @param xs What {@link #xs} is set to.
+     * @param ys What {@link #ys} is set to.
+     * @param size What {@link #size} is set to.
+     * @param xMin The minimum x value.
+     * @param xMax The maximum x value.
+     * @param yMin The minimum y value.
+     * @param yMax The maximum y value.
+     */
+    public Chart_ColumnarScatterData(long[] ids, double[] xs, double[] ys,
+            int size, double xMin, double xMax, double yMin, double yMax) {
+        super();
+        checkDuplicates = false;
+        this.ids = ids;
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+        if (size > 0) {
+            updateBounds(xMin, xMax, yMin, yMax);
+        }
+    }
+
+    /**
+     * @return The number of points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The x values. Only the first {@link #size()} are points.
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    /**
+     * @return The y values. Only the first {@link #size()} are points.
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * @return The ids. Only the first {@link #size()} are points.
+     */
+    public long[] getIds() {
+        return ids;
+    }
+
+    /**
+     * @param i The index.
+     * @return The x value of the i-th point.
+     */
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    /**
+     * @param i The index.
+     * @return The y value of the i-th point.
+     */
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @param i The index.
+     * @return The id of the i-th point.
+     */
+    public long getId(int i) {
+        return ids[i];
+    }
+
+    @Override
+    public void add(Chart_ID id, Chart_Point xy) {
+        add(id.getID(), xy.getX().toDouble(), xy.getY().toDouble());
+    }
+
+    /**
+     * Adds a point. If ids have been looked up using {@link #indexOf(long)}
+     * and a point with id already exists then a warning is printed and that
+     * point is replaced.
+     *
+     * @param id The id.
+     * @param x The x value.
+     * @param y The y value.
+     * @return The index of the point.
+     */
+    public int add(long id, double x, double y) {
+        int n = size;
+        int i = put(id, x, y);
+        if (i < n) {
+            System.out.println("Warning id already exists!");
+        }
+        return i;
+    }
+
+    /**
+     * Adds a point, replacing any with the same id if {@link #index} exists.
+     *
+     * @return The index of the point.
+     */
+    private int put(long id, double x, double y) {
+        int i;
+        if (index != null) {
+            i = indexOf(id);
+            if (i >= 0) {
+                xs[i] = x;
+                ys[i] = y;
+                updateBounds(x, x, y, y);
+                return i;
+            }
+        }
+        ensureCapacity(size + 1);
+        i = size;
+        ids[i] = id;
+        xs[i] = x;
+        ys[i] = y;
+        size++;
+        if (index != null) {
+            insert(i);
+        }
+        updateBounds(x, x, y, y);
+        return i;
+    }
+
+    @Override
+    public int addAll(Chart_ID[] ids, Chart_Point[] points, int n) {
+        long[] is = new long[n];
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            is[i] = ids[i].getID();
+            x[i] = points[i].getX().toDouble();
+            y[i] = points[i].getY().toDouble();
+        }
+        return addAll(is, x, y, 0, n);
+    }
+
+    /**
+     * Adds n points. If {@link #checkDuplicates} is {@code true}, or ids have
+     * been looked up using {@link #indexOf(long)}, then points with ids that
+     * already exist replace the existing points. If {@link #checkDuplicates}
+     * is {@code true} a single warning with the number of these is printed.
+     * Otherwise the points are appended and the bounds calculated in
+     * parallel.
+     *
+     * @param ids The ids.
+     * @param xs The x values.
+     * @param ys The y values.
+     * @param offset The index in the arrays of the first point to add.
+     * @param n The number of points to add.
+     * @return The number of points added with an id that already existed, or
+     * 0 if {@link #checkDuplicates} is {@code false}.
+     */
+    public int addAll(long[] ids, double[] xs, double[] ys, int offset,
+            int n) {
+        if (checkDuplicates || index != null) {
+            if (index == null) {
+                buildIndex((long) size + n);
+            }
+            int duplicates = 0;
+            for (int i = offset; i < offset + n; i++) {
+                int s = size;
+                if (put(ids[i], xs[i], ys[i]) < s) {
+                    duplicates++;
+                }
+            }
+            if (!checkDuplicates) {
+                return 0;
+            }
+            if (duplicates > 0) {
+                System.out.println("Warning " + duplicates
+                        + " ids already exist!");
+            }
+            return duplicates;
+        }
+        ensureCapacity(size + n);
+        System.arraycopy(ids, offset, this.ids, size, n);
+        System.arraycopy(xs, offset, this.xs, size, n);
+        System.arraycopy(ys, offset, this.ys, size, n);
+        size += n;
+        if (n > 0) {
+            double[] b = getBounds(xs, ys, offset, n);
+            updateBounds(b[0], b[1], b[2], b[3]);
+        }
+        return 0;
+    }
+
+    /**
+     * Calculates the bounds of n points in parallel parts of
+     * {@link #BOUNDS_CHUNK_SIZE}.
+     *
+     * @param xs The x values.
+     * @param ys The y values.
+     * @param offset The index of the first point.
+     * @param n The number of points (greater than 0).
+     * @return {minX, maxX, minY, maxY}.
+     */
+    public static double[] getBounds(double[] xs, double[] ys, int offset,
+            int n) {
+        int chunks = (n + BOUNDS_CHUNK_SIZE - 1) / BOUNDS_CHUNK_SIZE;
+        return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            int end = offset + Math.min(n, (c + 1) * BOUNDS_CHUNK_SIZE);
+            double x0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY;
+            double y0 = Double.POSITIVE_INFINITY;
+            double y1 = Double.NEGATIVE_INFINITY;
+            for (int i = offset + c * BOUNDS_CHUNK_SIZE; i < end; i++) {
+                double x = xs[i];
+                double y = ys[i];
+                x0 = x < x0 ? x : x0;
+                x1 = x > x1 ? x : x1;
+                y0 = y < y0 ? y : y0;
+                y1 = y > y1 ? y : y1;
+            }
+            return new double[]{x0, x1, y0, y1};
+        }).reduce((a, b) -> new double[]{Math.min(a[0], b[0]),
+            Math.max(a[1], b[1]), Math.min(a[2], b[2]),
+            Math.max(a[3], b[3])}).get();
+    }
+
+    /**
+     * For getting the index of the point with id. The first call builds a map
+     * from ids to indexes which is then maintained as points are added.
+     *
+     * @param id The id.
+     * @return The index of the point with id or -1 if there is no such point.
+     */
+    public int indexOf(long id) {
+        if (index == null) {
+            buildIndex(size);
+        }
+        int mask = index.length - 1;
+        int s = hash(id) & mask;
+        while (index[s] != 0) {
+            int i = index[s] - 1;
+            if (ids[i] == id) {
+                return i;
+            }
+            s = (s + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Trims the arrays to {@link #size()}.
+     */
+    public void trimToSize() {
+        if (xs.length != size) {
+            xs = Arrays.copyOf(xs, size);
+            ys = Arrays.copyOf(ys, size);
+            ids = Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * @param capacity The minimum capacity required.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > xs.length) {
+            int c = Math.max(capacity, xs.length + (xs.length >> 1) + 1);
+            xs = Arrays.copyOf(xs, c);
+            ys = Arrays.copyOf(ys, c);
+            ids = Arrays.copyOf(ids, c);
+        }
+    }
+
+    /**
+     * Updates the bounds and {@link #minX}, {@link #maxX}, {@link #minY} and
+     * {@link #maxY} if they change.
+     */
+    private void updateBounds(double x0, double x1, double y0, double y1) {
+        if (x0 < xMin) {
+            xMin = x0;
+            minX = BigRational.valueOf(x0);
+        }
+        if (x1 > xMax) {
+            xMax = x1;
+            maxX = BigRational.valueOf(x1);
+        }
+        if (y0 < yMin) {
+            yMin = y0;
+            minY = BigRational.valueOf(y0);
+        }
+        if (y1 > yMax) {
+            yMax = y1;
+            maxY = BigRational.valueOf(y1);
+        }
+    }
+
+    /**
+     * Builds {@link #index} for n points with capacity for at least twice as
+     * many (and for four times as many if {@link #MAX_INDEX_LENGTH} allows).
+     *
+     * @throws IllegalStateException if n is more than half
+     * {@link #MAX_INDEX_LENGTH}.
+     */
+    private void buildIndex(long n) {
+        if (n * 2 > MAX_INDEX_LENGTH) {
+            throw new IllegalStateException("Too many points to index " + n
+                    + " (the maximum is " + MAX_INDEX_LENGTH / 2 + ")");
+        }
+        long c = Long.highestOneBit(Math.max(16L, n * 4) - 1) << 1;
+        index = new int[(int) Math.min(c, MAX_INDEX_LENGTH)];
+        for (int i = 0; i < size; i++) {
+            insert(i);
+        }
+    }
+
+    /**
+     * Inserts the i-th point into {@link #index}, growing it if it would be
+     * more than half full.
+     */
+    private void insert(int i) {
+        if (size * 2 > index.length) {
+            buildIndex(size);
+            return;
+        }
+        int mask = index.length - 1;
+        int s = hash(ids[i]) & mask;
+        while (index[s] != 0) {
+            s = (s + 1) & mask;
+        }
+        index[s] = i + 1;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public long getPointCount() {
+        return size;
+    }
+}
@@ -0,0 +1,754 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * For loading numeric columns of delimited text files into chart data
+ * without creating a BigRational for each value. The file is divided into
+ * chunks that each start at the beginning of a line. Each chunk is memory
+ * mapped and the requested columns are parsed straight into double arrays in
+ * parallel, calculating the minimum and maximum of each column at the same
+ * time.
+ *
+ * Fields are split on {@link #delimiter} only (quoted fields are not
+ * supported). Empty fields are loaded as NaN and are ignored in the bounds.
+ * Columns of ids are parsed as integers so that ids too large to be exactly
+ * represented as doubles are kept.
+ */
+public class Chart_CsvLoader {
+
+    /**
+     * The largest chunk that is mapped at once.
+     */
+    public static final int MAX_CHUNK_SIZE = 1 << 30;
+
+    /**
+     * Powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+        1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+        1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * The file to load.
+     */
+    protected final Path file;
+
+    /**
+     * The field delimiter.
+     */
+    protected byte delimiter = ',';
+
+    /**
+     * If {@code true} the first line is a header and is skipped.
+     */
+    protected boolean header = true;
+
+    /**
+     * The number of chunks to divide the file into. If this is less than 1
+     * then four chunks per available processor are used.
+     */
+    protected int chunks;
+
+    /**
+     * Parsed columns.
+     */
+    public static class Columns {
+
+        /**
+         * The number of rows.
+         */
+        public final int n;
+
+        /**
+         * The values of each column. values[i] has length {@link #n}.
+         */
+        public final double[][] values;
+
+        /**
+         * The minimum (non NaN) value of each column or positive infinity if
+         * there are none.
+         */
+        public final double[] min;
+
+        /**
+         * The maximum (non NaN) value of each column or negative infinity if
+         * there are none.
+         */
+        public final double[] max;
+
+        /**
+         * The number of NaN values in each column.
+         */
+        public final long[] nans;
+
+        /**
+         * The values of each column parsed as integers. longs[i] has length
+         * {@link #n}.
+         */
+        public final long[][] longs;
+
+        Columns(int n, double[][] values, double[] min, double[] max,
+                long[] nans, long[][] longs) {
+            this.n = n;
+            this.values = values;
+            this.min = min;
+            this.max = max;
+            this.nans = nans;
+            this.longs = longs;
+        }
+    }
+
+    /**
+     * A line aligned part of the file and what has been parsed from it.
+     */
+    private static class Chunk {
+
+        final long start;
+        final long end;
+        int n;
+        double[][] values;
+        double[] min;
+        double[] max;
+        long[] nans;
+        long[][] longs;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * @param file What {@link #file} is set to.
+     */
+    public Chart_CsvLoader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param delimiter What {@link #delimiter} is set to.
+     */
+    public void setDelimiter(char delimiter) {
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * @param header What {@link #header} is set to.
+     */
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * @param chunks What {@link #chunks} is set to.
+     */
+    public void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Parses columns of {@link #file}.
+     *
+     * @param cols The indexes of the columns to parse (the first column is 0).
+     * @return The columns parsed in the order of cols.
+     * @throws IOException If encountered.
+     * @throws NumberFormatException If a field to parse is not a number.
+     */
+    public Columns load(int... cols) throws IOException {
+        return load(cols, new int[0]);
+    }
+
+    /**
+     * Parses columns of {@link #file}, some as doubles and some as integers.
+     *
+     * @param cols The indexes of the columns to parse as doubles (the first
+     * column is 0).
+     * @param longCols The indexes of the columns to parse as integers.
+     * @return The columns parsed in the order of cols and longCols. A column
+     * given more than once is parsed once and its values are in each place
+     * it was given.
+     * @throws IOException If encountered.
+     * @throws NumberFormatException If a field to parse is not a number, or
+     * a field to parse as an integer is empty or not an integer.
+     */
+    public Columns load(int[] cols, int[] longCols) throws IOException {
+        int maxCol = 0;
+        for (int c : cols) {
+            maxCol = Math.max(maxCol, c);
+        }
+        for (int c : longCols) {
+            maxCol = Math.max(maxCol, c);
+        }
+        int[][] slots = getSlots(cols, maxCol);
+        int[][] longSlots = getSlots(longCols, maxCol);
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            Chunk[] cs = split(fc);
+            try {
+                IntStream.range(0, cs.length).parallel().forEach(i -> {
+                    try {
+                        parse(fc, cs[i], slots, cols.length, longSlots,
+                                longCols.length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return merge(cs, cols.length, longCols.length);
+        }
+    }
+
+    /**
+     * Loads scatter data. Rows where x or y is NaN are not loaded and the
+     * bounds are of the rows loaded.
+     *
+     * @param idCol The column of integer ids or -1 to use the row numbers
+     * (starting at 0) as ids.
+     * @param xCol The column of x values.
+     * @param yCol The column of y values.
+     * @return The scatter data.
+     * @throws IOException If encountered.
+     */
+    public Chart_ColumnarScatterData loadScatter(int idCol, int xCol,
+            int yCol) throws IOException {
+        Columns c = load(new int[]{xCol, yCol},
+                idCol < 0 ? new int[0] : new int[]{idCol});
+        double[] xs = c.values[0];
+        double[] ys = c.values[1];
+        long[] ids = idCol < 0 ? new long[c.n] : c.longs[0];
+        if (c.nans[0] == 0 && c.nans[1] == 0) {
+            if (idCol < 0) {
+                for (int i = 0; i < c.n; i++) {
+                    ids[i] = i;
+                }
+            }
+            return new Chart_ColumnarScatterData(ids, xs, ys, c.n, c.min[0],
+                    c.max[0], c.min[1], c.max[1]);
+        }
+        int n = 0;
+        for (int i = 0; i < c.n; i++) {
+            if (!Double.isNaN(xs[i]) && !Double.isNaN(ys[i])) {
+                ids[n] = idCol < 0 ? i : ids[i];
+                xs[n] = xs[i];
+                ys[n] = ys[i];
+                n++;
+            }
+        }
+        if (n == 0) {
+            return new Chart_ColumnarScatterData(ids, xs, ys, 0, Double.NaN,
+                    Double.NaN, Double.NaN, Double.NaN);
+        }
+        double[] b = Chart_ColumnarScatterData.getBounds(xs, ys, 0, n);
+        return new Chart_ColumnarScatterData(ids, xs, ys, n, b[0], b[1],
+                b[2], b[3]);
+    }
+
+    /**
+     * Loads a series into line data and updates its bounds with those of the
+     * rows loaded. Rows where x or y is NaN are not loaded. The rows need not
+     * be in order of x; if several have the same x the last is loaded.
+     *
+     * @param d The line data to add the series to.
+     * @param name The name of the series.
+     * @param xCol The column of x values.
+     * @param yCol The column of y values.
+     * @throws IOException If encountered.
+     */
+    public void loadLine(Chart_LineData d, String name, int xCol, int yCol)
+            throws IOException {
+        Columns c = load(xCol, yCol);
+        double[] xs = c.values[0];
+        double[] ys = c.values[1];
+        int n = 0;
+        for (int i = 0; i < c.n; i++) {
+            if (!Double.isNaN(xs[i]) && !Double.isNaN(ys[i])) {
+                xs[n] = xs[i];
+                ys[n] = ys[i];
+                n++;
+            }
+        }
+        Chart_LineSeries s = new Chart_LineSeries(xs, ys, n);
+        d.maps.put(name, s);
+        if (s.size() > 0) {
+            double[] b = Chart_ColumnarScatterData.getBounds(s.getXs(),
+                    s.getYs(), 0, s.size());
+            d.minX = min(d.minX, b[0]);
+            d.maxX = max(d.maxX, b[1]);
+            d.minY = min(d.minY, b[2]);
+            d.maxY = max(d.maxY, b[3]);
+        }
+    }
+
+    /**
+     * Loads bar data by counting the values of a column in intervals of
+     * intervalWidth starting from the minimum value. NaN values are not
+     * counted.
+     *
+     * @param col The column.
+     * @param intervalWidth The width of the intervals.
+     * @return The bar data.
+     * @throws IOException If encountered.
+     */
+    public Chart_BarData loadBar(int col, BigRational intervalWidth)
+            throws IOException {
+        Columns c = load(col);
+        return getBarData(c.values[0], c.n, c.min[0], c.max[0], intervalWidth);
+    }
+
+    /**
+     * Creates bar data by counting values in intervals of intervalWidth
+     * starting from min. NaN values are not counted.
+     *
+     * @param v The values.
+     * @param n The number of values.
+     * @param min The minimum (non NaN) value.
+     * @param max The maximum (non NaN) value.
+     * @param intervalWidth The width of the intervals.
+     * @return The bar data.
+     */
+    public static Chart_BarData getBarData(double[] v, int n, double min,
+            double max, BigRational intervalWidth) {
+        Chart_BarData r = new Chart_BarData();
+        r.intervalWidth = intervalWidth;
+        if (min > max) {
+            return r;
+        }
+        double w = intervalWidth.toDouble();
+        int bins = (int) ((max - min) / w) + 1;
+        int[] counts = new int[bins];
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(v[i])) {
+                counts[(int) ((v[i] - min) / w)]++;
+            }
+        }
+        BigRational bmin = BigRational.valueOf(min);
+        int maxCount = 0;
+        for (int i = 0; i < bins; i++) {
+            BigRational lower = bmin.add(intervalWidth.multiply(i));
+            BigRational upper = lower.add(intervalWidth);
+            r.counts.put(i, counts[i]);
+            r.mins.put(i, lower);
+            r.centres.put(i, lower.add(intervalWidth.divide(2)));
+            r.labels.put(i, lower.toDouble() + " - " + upper.toDouble());
+            maxCount = Math.max(maxCount, counts[i]);
+        }
+        r.minX = bmin;
+        r.maxX = bmin.add(intervalWidth.multiply(bins));
+        r.minY = BigRational.ZERO;
+        r.maxY = BigRational.valueOf(maxCount);
+        return r;
+    }
+
+    /**
+     * @param cols The indexes of columns to parse.
+     * @param maxCol The largest index of a column to parse.
+     * @return For each column, the places in cols it is at or {@code null}
+     * if it is not in cols.
+     */
+    private static int[][] getSlots(int[] cols, int maxCol) {
+        int[] counts = new int[maxCol + 1];
+        for (int c : cols) {
+            counts[c]++;
+        }
+        int[][] r = new int[maxCol + 1][];
+        for (int i = 0; i < cols.length; i++) {
+            int c = cols[i];
+            if (r[c] == null) {
+                r[c] = new int[counts[c]];
+                counts[c] = 0;
+            }
+            r[c][counts[c]++] = i;
+        }
+        return r;
+    }
+
+    /**
+     * Divides the file into chunks that start at the beginning of a line.
+     */
+    private Chunk[] split(FileChannel fc) throws IOException {
+        long size = fc.size();
+        int k = chunks > 0 ? chunks
+                : 4 * Runtime.getRuntime().availableProcessors();
+        k = (int) Math.max(k, (size + MAX_CHUNK_SIZE / 2 - 1)
+                / (MAX_CHUNK_SIZE / 2));
+        k = (int) Math.max(1, Math.min(k, size / 4096 + 1));
+        long[] starts = new long[k + 1];
+        starts[k] = size;
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        for (int i = 1; i < k; i++) {
+            long p = Math.max(starts[i - 1], size * i / k);
+            starts[i] = nextLine(fc, p, buf, size);
+        }
+        Chunk[] r = new Chunk[k];
+        for (int i = 0; i < k; i++) {
+            r[i] = new Chunk(starts[i], Math.max(starts[i], starts[i + 1]));
+        }
+        return r;
+    }
+
+    /**
+     * @return The position after the first line end at or after p, or size.
+     */
+    private static long nextLine(FileChannel fc, long p, ByteBuffer buf,
+            long size) throws IOException {
+        if (p == 0) {
+            return 0;
+        }
+        // A chunk starts at p if the previous byte ends a line.
+        p--;
+        while (p < size) {
+            buf.clear();
+            int read = fc.read(buf, p);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buf.get(i) == '\n') {
+                    return p + i + 1;
+                }
+            }
+            p += read;
+        }
+        return size;
+    }
+
+    /**
+     * Maps and parses a chunk.
+     */
+    private void parse(FileChannel fc, Chunk c, int[][] slots, int ncols,
+            int[][] longSlots, int nlongs) throws IOException {
+        int len = (int) (c.end - c.start);
+        int capacity = Math.max(16, len / 16);
+        c.values = new double[ncols][capacity];
+        c.longs = new long[nlongs][capacity];
+        c.min = new double[ncols];
+        c.max = new double[ncols];
+        c.nans = new long[ncols];
+        Arrays.fill(c.min, Double.POSITIVE_INFINITY);
+        Arrays.fill(c.max, Double.NEGATIVE_INFINITY);
+        if (len == 0) {
+            return;
+        }
+        MappedByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, c.start,
+                len);
+        byte delim = delimiter;
+        double[] row = new double[ncols];
+        long[] longRow = new long[nlongs];
+        boolean[] longSet = new boolean[nlongs];
+        int p = 0;
+        if (header && c.start == 0) {
+            while (p < len && b.get(p) != '\n') {
+                p++;
+            }
+            p++;
+        }
+        while (p < len) {
+            int lineStart = p;
+            Arrays.fill(row, Double.NaN);
+            Arrays.fill(longSet, false);
+            int field = 0;
+            while (p < len && b.get(p) != '\n') {
+                int fs = p;
+                byte ch;
+                while (p < len && (ch = b.get(p)) != delim && ch != '\n') {
+                    p++;
+                }
+                int fe = p;
+                if (fe > fs && b.get(fe - 1) == '\r') {
+                    fe--;
+                }
+                if (field < slots.length && slots[field] != null) {
+                    double v = parseDouble(b, fs, fe, c.start);
+                    for (int j : slots[field]) {
+                        row[j] = v;
+                    }
+                }
+                if (field < longSlots.length && longSlots[field] != null) {
+                    long v = parseLong(b, fs, fe, c.start);
+                    for (int j : longSlots[field]) {
+                        longRow[j] = v;
+                        longSet[j] = true;
+                    }
+                }
+                field++;
+                if (p < len && b.get(p) == delim) {
+                    p++;
+                }
+            }
+            p++;
+            int lineEnd = Math.min(p - 1, len);
+            if (lineEnd == lineStart || (lineEnd == lineStart + 1
+                    && b.get(lineStart) == '\r')) {
+                continue;
+            }
+            for (int j = 0; j < nlongs; j++) {
+                if (!longSet[j]) {
+                    throw new NumberFormatException("Missing integer at byte "
+                            + (c.start + lineStart) + " of file");
+                }
+            }
+            if (c.n == capacity) {
+                capacity = c.n + (c.n >> 1) + 1;
+                for (int j = 0; j < ncols; j++) {
+                    c.values[j] = Arrays.copyOf(c.values[j], capacity);
+                }
+                for (int j = 0; j < nlongs; j++) {
+                    c.longs[j] = Arrays.copyOf(c.longs[j], capacity);
+                }
+            }
+            for (int j = 0; j < nlongs; j++) {
+                c.longs[j][c.n] = longRow[j];
+            }
+            for (int j = 0; j < ncols; j++) {
+                double v = row[j];
+                c.values[j][c.n] = v;
+                if (Double.isNaN(v)) {
+                    c.nans[j]++;
+                } else {
+                    if (v < c.min[j]) {
+                        c.min[j] = v;
+                    }
+                    if (v > c.max[j]) {
+                        c.max[j] = v;
+                    }
+                }
+            }
+            c.n++;
+        }
+    }
+
+    /**
+     * Joins the chunks in order.
+     */
+    private static Columns merge(Chunk[] cs, int ncols, int nlongs) {
+        long total = 0;
+        for (Chunk c : cs) {
+            total += c.n;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many rows " + total);
+        }
+        int n = (int) total;
+        double[][] values = new double[ncols][n];
+        double[] min = new double[ncols];
+        double[] max = new double[ncols];
+        long[] nans = new long[ncols];
+        long[][] longs = new long[nlongs][n];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        int o = 0;
+        for (Chunk c : cs) {
+            for (int j = 0; j < ncols; j++) {
+                System.arraycopy(c.values[j], 0, values[j], o, c.n);
+                min[j] = Math.min(min[j], c.min[j]);
+                max[j] = Math.max(max[j], c.max[j]);
+                nans[j] += c.nans[j];
+            }
+            for (int j = 0; j < nlongs; j++) {
+                System.arraycopy(c.longs[j], 0, longs[j], o, c.n);
+            }
+            o += c.n;
+            c.values = null;
+            c.longs = null;
+        }
+        return new Columns(n, values, min, max, nans, longs);
+    }
+
+    /**
+     * Parses the bytes from fs to fe as a double. Plain decimals with up to
+     * 15 significant digits and small exponents are calculated directly, which
+     * gives the same result as {@link Double#parseDouble(String)}; anything
+     * else is passed to that.
+     *
+     * @return The value or NaN if the field is empty.
+     */
+    private static double parseDouble(ByteBuffer b, int fs, int fe,
+            long offset) {
+        while (fs < fe && b.get(fs) == ' ') {
+            fs++;
+        }
+        while (fe > fs && b.get(fe - 1) == ' ') {
+            fe--;
+        }
+        if (fs == fe) {
+            return Double.NaN;
+        }
+        int p = fs;
+        boolean negative = false;
+        byte ch = b.get(p);
+        if (ch == '-' || ch == '+') {
+            negative = ch == '-';
+            p++;
+        }
+        long m = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean any = false;
+        for (; p < fe; p++) {
+            ch = b.get(p);
+            if (ch >= '0' && ch <= '9') {
+                any = true;
+                if (m == 0 && ch == '0') {
+                    if (point) {
+                        scale--;
+                    }
+                    continue;
+                }
+                if (++digits > 15) {
+                    return parseSlow(b, fs, fe, offset);
+                }
+                m = m * 10 + (ch - '0');
+                if (point) {
+                    scale--;
+                }
+            } else if (ch == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (!any) {
+            return parseSlow(b, fs, fe, offset);
+        }
+        if (p < fe) {
+            if (ch != 'e' && ch != 'E') {
+                return parseSlow(b, fs, fe, offset);
+            }
+            p++;
+            boolean negativeExp = false;
+            if (p < fe && (b.get(p) == '-' || b.get(p) == '+')) {
+                negativeExp = b.get(p) == '-';
+                p++;
+            }
+            if (p == fe) {
+                return parseSlow(b, fs, fe, offset);
+            }
+            int e = 0;
+            for (; p < fe; p++) {
+                ch = b.get(p);
+                if (ch < '0' || ch > '9' || e > 1000) {
+                    return parseSlow(b, fs, fe, offset);
+                }
+                e = e * 10 + (ch - '0');
+            }
+            scale += negativeExp ? -e : e;
+        }
+        double v;
+        if (m == 0) {
+            v = 0;
+        } else if (scale == 0) {
+            v = m;
+        } else if (scale > 0 && scale <= 22) {
+            v = m * POW10[scale];
+        } else if (scale < 0 && scale >= -22) {
+            v = m / POW10[-scale];
+        } else {
+            return parseSlow(b, fs, fe, offset);
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * Parses the bytes from fs to fe as a long. Up to 18 digits are
+     * calculated directly; anything longer is passed to
+     * {@link Long#parseLong(String)}.
+     *
+     * @throws NumberFormatException If the field is empty or not an integer.
+     */
+    private static long parseLong(ByteBuffer b, int fs, int fe, long offset) {
+        while (fs < fe && b.get(fs) == ' ') {
+            fs++;
+        }
+        while (fe > fs && b.get(fe - 1) == ' ') {
+            fe--;
+        }
+        int p = fs;
+        boolean negative = false;
+        if (p < fe && (b.get(p) == '-' || b.get(p) == '+')) {
+            negative = b.get(p) == '-';
+            p++;
+        }
+        if (p == fe || fe - p > 18) {
+            return parseLongSlow(b, fs, fe, offset);
+        }
+        long v = 0;
+        for (; p < fe; p++) {
+            byte ch = b.get(p);
+            if (ch < '0' || ch > '9') {
+                return parseLongSlow(b, fs, fe, offset);
+            }
+            v = v * 10 + (ch - '0');
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * Parses the bytes from fs to fe using {@link Long#parseLong(String)}.
+     */
+    private static long parseLongSlow(ByteBuffer b, int fs, int fe,
+            long offset) {
+        byte[] bytes = new byte[fe - fs];
+        b.get(fs, bytes);
+        String s = new String(bytes, StandardCharsets.US_ASCII);
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("\"" + s + "\" at byte "
+                    + (offset + fs) + " of file is not an integer");
+        }
+    }
+
+    /**
+     * Parses the bytes from fs to fe using {@link Double#parseDouble(String)}.
+     */
+    private static double parseSlow(ByteBuffer b, int fs, int fe,
+            long offset) {
+        byte[] bytes = new byte[fe - fs];
+        b.get(fs, bytes);
+        String s = new String(bytes, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("\"" + s + "\" at byte "
+                    + (offset + fs) + " of file is not a number");
+        }
+    }
+
+    private static BigRational min(BigRational a, double b) {
+        BigRational r = BigRational.valueOf(b);
+        return a == null || r.compareTo(a) < 0 ? r : a;
+    }
+
+    private static BigRational max(BigRational a, double b) {
+        BigRational r = BigRational.valueOf(b);
+        return a == null || r.compareTo(a) > 0 ? r : a;
+    }
+}
@@ -47,5 +47,11 @@ public class Chart_Data {
      * Create a new instance.
      */
     public Chart_Data() {}
-    
+
+    /**
+     * @return The number of data points or {@code -1} if this is not known.
+     */
+    public long getPointCount() {
+        return -1L;
+    }
 }
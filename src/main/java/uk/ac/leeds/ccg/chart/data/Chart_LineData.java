@@ -31,9 +31,9 @@ public class Chart_LineData extends Chart_Data {
     public TreeMap<BigRational, String> xAxisLabels;
     
     /**
-     * Keys are labels, values are plot coordinates. 
+     * Keys are labels, values are the series of plot coordinates.
      */
-    public TreeMap<String, TreeMap<BigRational, BigRational>> maps;
+    public TreeMap<String, Chart_LineSeries> maps;
     
     public TreeMap<String, Boolean> nonZero;
     
@@ -46,4 +46,13 @@ public class Chart_LineData extends Chart_Data {
         //nonZero = new TreeMap<>();
         //nonZero2 = new TreeMap<>();
     }
+
+    @Override
+    public long getPointCount() {
+        long n = 0L;
+        for (Chart_LineSeries s : maps.values()) {
+            n += s.size();
+        }
+        return n;
+    }
 }
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A series of a line chart stored in growable primitive arrays of x and y
+ * values kept in order of x, with at most one y value for each x as in a
+ * map. Each point takes 16 bytes. Adding a point with an x greater than any
+ * other is an append; other points are inserted in order by binary search.
+ * Many points can be given at once in any order with
+ * {@link #Chart_LineSeries(double[], double[], int)}.
+ * The points in a window of x values are found by binary search.
+ */
+public class Chart_LineSeries {
+
+    /**
+     * The default initial capacity.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The x values in ascending order. Only the first {@link #size} are
+     * points.
+     */
+    protected double[] xs;
+
+    /**
+     * The y values. Only the first {@link #size} are points.
+     */
+    protected double[] ys;
+
+    /**
+     * The number of points.
+     */
+    protected int size;
+
+    /**
+     * Create a new instance.
+     */
+    public Chart_LineSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The initial capacity.
+     */
+    public Chart_LineSeries(int capacity) {
+        xs = new double[capacity];
+        ys = new double[capacity];
+    }
+
+    /**
+     * Creates a new instance which uses rather than copies the arrays given.
+     * The first n points are sorted by x if they are not in order already
+     * and of the points with the same x only the last is kept, so the result
+     * is as if each were added in turn with {@link #add(double, double)} but
+     * in O(n log n) time.
+     *
+     * @param xs What {@link #xs} is set to. The values must not be NaN.
+     * @param ys What {@link #ys} is set to.
+     * @param n The number of points.
+     */
+    public Chart_LineSeries(double[] xs, double[] ys, int n) {
+        this.xs = xs;
+        this.ys = ys;
+        for (int i = 1; i < n; i++) {
+            if (Double.compare(xs[i], xs[i - 1]) < 0) {
+                sort(xs, ys, n);
+                break;
+            }
+        }
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (k > 0 && Double.compare(xs[i], xs[k - 1]) == 0) {
+                ys[k - 1] = ys[i];
+            } else {
+                xs[k] = xs[i];
+                ys[k] = ys[i];
+                k++;
+            }
+        }
+        size = k;
+    }
+
+    /**
+     * Sorts the first n points by x with a bottom up merge sort, which is
+     * stable so points with the same x stay in the order they were given.
+     */
+    private static void sort(double[] xs, double[] ys, int n) {
+        double[] srcX = xs;
+        double[] srcY = ys;
+        double[] dstX = new double[n];
+        double[] dstY = new double[n];
+        for (int w = 1; w < n; w <<= 1) {
+            for (int lo = 0; lo < n; lo += w << 1) {
+                int mid = Math.min(lo + w, n);
+                int hi = Math.min(lo + (w << 1), n);
+                int a = lo;
+                int b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (b >= hi || (a < mid
+                            && Double.compare(srcX[a], srcX[b]) <= 0)) {
+                        dstX[k] = srcX[a];
+                        dstY[k] = srcY[a];
+                        a++;
+                    } else {
+                        dstX[k] = srcX[b];
+                        dstY[k] = srcY[b];
+                        b++;
+                    }
+                }
+            }
+            double[] t = srcX;
+            srcX = dstX;
+            dstX = t;
+            t = srcY;
+            srcY = dstY;
+            dstY = t;
+        }
+        if (srcX != xs) {
+            System.arraycopy(srcX, 0, xs, 0, n);
+            System.arraycopy(srcY, 0, ys, 0, n);
+        }
+    }
+
+    /**
+     * Create a new instance with the entries of m converted to doubles.
+     *
+     * @param m The map of x values to y values.
+     */
+    public Chart_LineSeries(Map<BigRational, BigRational> m) {
+        this(m.size());
+        for (Map.Entry<BigRational, BigRational> e : m.entrySet()) {
+            add(e.getKey().toDouble(), e.getValue().toDouble());
+        }
+    }
+
+    /**
+     * Adds a point, or if there is a point with x already, sets its y value.
+     *
+     * @param x The x value.
+     * @param y The y value.
+     * @return The index of the point.
+     */
+    public int add(double x, double y) {
+        if (size == 0 || x > xs[size - 1]) {
+            ensureCapacity(size + 1);
+            xs[size] = x;
+            ys[size] = y;
+            return size++;
+        }
+        int i = Arrays.binarySearch(xs, 0, size, x);
+        if (i >= 0) {
+            ys[i] = y;
+            return i;
+        }
+        i = -i - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(xs, i, xs, i + 1, size - i);
+        System.arraycopy(ys, i, ys, i + 1, size - i);
+        xs[i] = x;
+        ys[i] = y;
+        size++;
+        return i;
+    }
+
+    /**
+     * @param x The x value.
+     * @return The index of the point with x or -1 if there is none.
+     */
+    public int indexOf(double x) {
+        int i = Arrays.binarySearch(xs, 0, size, x);
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * @param x The x value.
+     * @return The y value of the point with x or NaN if there is none.
+     */
+    public double get(double x) {
+        int i = indexOf(x);
+        return i < 0 ? Double.NaN : ys[i];
+    }
+
+    /**
+     * @param x The x value.
+     * @return The index of the first point with an x value not less than x,
+     * or {@link #size()} if there is none.
+     */
+    public int fromIndex(double x) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param x The x value.
+     * @return The index after the last point with an x value not greater than
+     * x, or 0 if there is none.
+     */
+    public int toIndex(double x) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Removes all the points.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return The number of points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The x values in ascending order. Only the first
+     * {@link #size()} are points.
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    /**
+     * @return The y values. Only the first {@link #size()} are points.
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Trims the arrays to {@link #size()}.
+     */
+    public void trimToSize() {
+        if (xs.length != size) {
+            xs = Arrays.copyOf(xs, size);
+            ys = Arrays.copyOf(ys, size);
+        }
+    }
+
+    /**
+     * @param capacity The minimum capacity required.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > xs.length) {
+            int c = Math.max(capacity, xs.length + (xs.length >> 1) + 1);
+            xs = Arrays.copyOf(xs, c);
+            ys = Arrays.copyOf(ys, c);
+        }
+    }
+}
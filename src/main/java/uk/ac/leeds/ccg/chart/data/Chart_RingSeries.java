@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+/**
+ * A streaming series of a line chart stored in a fixed capacity ring of
+ * primitive x and y values. Points are appended in order of x and once the
+ * ring is full each point appended overwrites the oldest. Each point has a
+ * sequence number which is the number of points appended before it, so the
+ * points appended since some earlier time can be found however many have
+ * been overwritten. The minimum and maximum y values of the points are kept
+ * in monotonic queues so all operations take amortised constant time.
+ */
+public class Chart_RingSeries {
+
+    /**
+     * The x values of the points. The point with sequence number s is at
+     * index s % capacity.
+     */
+    protected final double[] xs;
+
+    /**
+     * The y values of the points.
+     */
+    protected final double[] ys;
+
+    /**
+     * The number of points that can be stored.
+     */
+    protected final int capacity;
+
+    /**
+     * The number of points.
+     */
+    protected int size;
+
+    /**
+     * The number of points appended.
+     */
+    protected long count;
+
+    /**
+     * The sequence numbers of the points with y values that are the minimum
+     * of those after them in ascending order of y values.
+     */
+    private final Deque mins;
+
+    /**
+     * The sequence numbers of the points with y values that are the maximum
+     * of those after them in descending order of y values.
+     */
+    private final Deque maxs;
+
+    /**
+     * @param capacity The number of points that can be stored.
+     */
+    public Chart_RingSeries(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity " + capacity
+                    + " < 1");
+        }
+        this.capacity = capacity;
+        xs = new double[capacity];
+        ys = new double[capacity];
+        mins = new Deque(capacity);
+        maxs = new Deque(capacity);
+    }
+
+    /**
+     * Appends a point, overwriting the oldest point if the ring is full.
+     *
+     * @param x The x value which must not be less than that of the last point.
+     * @param y The y value which must not be NaN.
+     * @return The sequence number of the point.
+     * @throws IllegalArgumentException If x is less than the x value of the
+     * last point.
+     */
+    public long add(double x, double y) {
+        if (size > 0 && x < getLastX()) {
+            throw new IllegalArgumentException("x " + x + " < last x "
+                    + getLastX());
+        }
+        if (size == capacity) {
+            removeFirst();
+        }
+        long s = count++;
+        int i = (int) (s % capacity);
+        xs[i] = x;
+        ys[i] = y;
+        size++;
+        while (mins.size > 0 && ys[index(mins.last())] >= y) {
+            mins.removeLast();
+        }
+        mins.addLast(s);
+        while (maxs.size > 0 && ys[index(maxs.last())] <= y) {
+            maxs.removeLast();
+        }
+        maxs.addLast(s);
+        return s;
+    }
+
+    /**
+     * Removes the oldest points with x values less than x but keeps the last
+     * of them so that a line can be drawn from it to the first point with an
+     * x value not less than x.
+     *
+     * @param x The x value.
+     * @return The number of points removed.
+     */
+    public int removeBefore(double x) {
+        int r = 0;
+        while (size > 1 && getX(1) < x) {
+            removeFirst();
+            r++;
+        }
+        return r;
+    }
+
+    /**
+     * Removes the oldest point.
+     */
+    protected void removeFirst() {
+        long s = getFirstSequence();
+        if (mins.size > 0 && mins.first() == s) {
+            mins.removeFirst();
+        }
+        if (maxs.size > 0 && maxs.first() == s) {
+            maxs.removeFirst();
+        }
+        size--;
+    }
+
+    /**
+     * Removes all the points. The count of points appended is kept so
+     * sequence numbers continue.
+     */
+    public void clear() {
+        size = 0;
+        mins.clear();
+        maxs.clear();
+    }
+
+    /**
+     * @param s A sequence number.
+     * @return The index in {@link #xs} and {@link #ys} of the point with
+     * sequence number s.
+     */
+    private int index(long s) {
+        return (int) (s % capacity);
+    }
+
+    /**
+     * @param i The index of the point from the oldest, which is 0.
+     * @return The x value of the point.
+     */
+    public double getX(int i) {
+        return xs[index(getFirstSequence() + i)];
+    }
+
+    /**
+     * @param i The index of the point from the oldest, which is 0.
+     * @return The y value of the point.
+     */
+    public double getY(int i) {
+        return ys[index(getFirstSequence() + i)];
+    }
+
+    /**
+     * @return The x value of the last point appended.
+     */
+    public double getLastX() {
+        return xs[index(count - 1)];
+    }
+
+    /**
+     * @return The y value of the last point appended.
+     */
+    public double getLastY() {
+        return ys[index(count - 1)];
+    }
+
+    /**
+     * @return The minimum y value of the points or NaN if there are none.
+     */
+    public double getMinY() {
+        return mins.size == 0 ? Double.NaN : ys[index(mins.first())];
+    }
+
+    /**
+     * @return The maximum y value of the points or NaN if there are none.
+     */
+    public double getMaxY() {
+        return maxs.size == 0 ? Double.NaN : ys[index(maxs.first())];
+    }
+
+    /**
+     * @return The sequence number of the oldest point.
+     */
+    public long getFirstSequence() {
+        return count - size;
+    }
+
+    /**
+     * @return {@link #count}.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return {@link #size}.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return {@link #capacity}.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * A fixed capacity double ended queue of sequence numbers.
+     */
+    private static class Deque {
+
+        final long[] a;
+        int head;
+        int size;
+
+        Deque(int capacity) {
+            a = new long[capacity];
+        }
+
+        long first() {
+            return a[head];
+        }
+
+        long last() {
+            return a[(head + size - 1) % a.length];
+        }
+
+        void addLast(long s) {
+            a[(head + size) % a.length] = s;
+            size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) % a.length;
+            size--;
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
@@ -15,7 +15,10 @@
  */
 package uk.ac.leeds.ccg.chart.data;
 
+import ch.obermuhlner.math.big.BigRational;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  *
@@ -28,6 +31,17 @@ public class Chart_ScatterData extends Chart_Data {
      */
     public HashMap<Chart_ID, Chart_Point> data;
 
+    /**
+     * The number of points in each part of a parallel bounds calculation.
+     */
+    public static final int BOUNDS_CHUNK_SIZE = 1 << 14;
+
+    /**
+     * If {@code true} then the addAll methods count the points added that
+     * have ids which already exist and print a warning with the count.
+     */
+    protected boolean checkDuplicates = true;
+
     /**
      * Create a new instance.
      */
@@ -65,4 +79,125 @@ public class Chart_ScatterData extends Chart_Data {
         }
         data.put(id, xy);
     }
+
+    /**
+     * @return {@link #checkDuplicates}.
+     */
+    public boolean isCheckDuplicates() {
+        return checkDuplicates;
+    }
+
+    /**
+     * @param checkDuplicates What {@link #checkDuplicates} is set to.
+     */
+    public void setCheckDuplicates(boolean checkDuplicates) {
+        this.checkDuplicates = checkDuplicates;
+    }
+
+    /**
+     * Adds all the points in m.
+     *
+     * @param m The points to add.
+     * @return The number of points added with an id that already existed.
+     */
+    public int addAll(Map<Chart_ID, Chart_Point> m) {
+        Chart_ID[] ids = m.keySet().toArray(Chart_ID[]::new);
+        Chart_Point[] points = new Chart_Point[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            points[i] = m.get(ids[i]);
+        }
+        return addAll(ids, points, ids.length);
+    }
+
+    /**
+     * Adds n points. The bounds are calculated for all the points together in
+     * parallel. As in {@link #add(Chart_ID, Chart_Point)} a point with an id
+     * that already exists replaces the existing point, but rather than a
+     * warning for each, if {@link #checkDuplicates} is {@code true} a single
+     * warning with the number of them is printed.
+     *
+     * @param ids The ids of the points.
+     * @param points The points.
+     * @param n The number of points to add.
+     * @return The number of points added with an id that already existed, or
+     * 0 if {@link #checkDuplicates} is {@code false}.
+     */
+    public int addAll(Chart_ID[] ids, Chart_Point[] points, int n) {
+        if (n == 0) {
+            return 0;
+        }
+        if (data.isEmpty()) {
+            data = HashMap.newHashMap(n);
+        }
+        BigRational[] b = getBounds(points, n);
+        int duplicates = 0;
+        if (checkDuplicates) {
+            for (int i = 0; i < n; i++) {
+                if (data.put(ids[i], points[i]) != null) {
+                    duplicates++;
+                }
+            }
+            if (duplicates > 0) {
+                System.out.println("Warning " + duplicates
+                        + " ids already exist!");
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                data.put(ids[i], points[i]);
+            }
+        }
+        if (minX == null || b[0].compareTo(minX) < 0) {
+            minX = b[0];
+        }
+        if (maxX == null || b[1].compareTo(maxX) > 0) {
+            maxX = b[1];
+        }
+        if (minY == null || b[2].compareTo(minY) < 0) {
+            minY = b[2];
+        }
+        if (maxY == null || b[3].compareTo(maxY) > 0) {
+            maxY = b[3];
+        }
+        return duplicates;
+    }
+
+    /**
+     * Calculates the bounds of points in parallel parts of
+     * {@link #BOUNDS_CHUNK_SIZE}.
+     *
+     * @param points The points.
+     * @param n The number of points (greater than 0).
+     * @return {minX, maxX, minY, maxY}.
+     */
+    protected static BigRational[] getBounds(Chart_Point[] points, int n) {
+        int chunks = (n + BOUNDS_CHUNK_SIZE - 1) / BOUNDS_CHUNK_SIZE;
+        return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            int end = Math.min(n, (c + 1) * BOUNDS_CHUNK_SIZE);
+            Chart_Point p = points[c * BOUNDS_CHUNK_SIZE];
+            BigRational[] r = {p.x, p.x, p.y, p.y};
+            for (int i = c * BOUNDS_CHUNK_SIZE + 1; i < end; i++) {
+                p = points[i];
+                if (p.x.compareTo(r[0]) < 0) {
+                    r[0] = p.x;
+                } else if (p.x.compareTo(r[1]) > 0) {
+                    r[1] = p.x;
+                }
+                if (p.y.compareTo(r[2]) < 0) {
+                    r[2] = p.y;
+                } else if (p.y.compareTo(r[3]) > 0) {
+                    r[3] = p.y;
+                }
+            }
+            return r;
+        }).reduce((a, b) -> new BigRational[]{
+            a[0].compareTo(b[0]) <= 0 ? a[0] : b[0],
+            a[1].compareTo(b[1]) >= 0 ? a[1] : b[1],
+            a[2].compareTo(b[2]) <= 0 ? a[2] : b[2],
+            a[3].compareTo(b[3]) >= 0 ? a[3] : b[3]}).get();
+    }
+
+    @Override
+    public long getPointCount() {
+        return data.size();
+    }
 }
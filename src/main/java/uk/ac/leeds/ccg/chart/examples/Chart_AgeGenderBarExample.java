@@ -25,12 +25,10 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import uk.ac.leeds.ccg.chart.core.Chart_AgeGender;
+import uk.ac.leeds.ccg.chart.core.Chart_RenderService;
 import uk.ac.leeds.ccg.chart.data.Chart_AgeGenderBarData;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
-import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 
 /**
@@ -206,17 +204,13 @@ public class Chart_AgeGenderBarExample extends Chart_AgeGender {
             int oomx = -3;
             int oomy = 0;
             RoundingMode rm = RoundingMode.HALF_UP;
-            ExecutorService es = Executors.newSingleThreadExecutor();
-            Chart_AgeGenderBarExample chart = new Chart_AgeGenderBarExample(e, es, file,
+            Chart_AgeGenderBarExample chart = new Chart_AgeGenderBarExample(e, null, file,
                     format, title, dataWidth, dataHeight, xAxisLabel,
                     yAxisLabel, drawOriginLinesOnPlot, ageInterval,
                     startAgeOfEndYearInterval, oomx, oomy, rm);
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
-            chart.run();
-            Future future = chart.future;
-            Generic_Execution exec = new Generic_Execution(e);
-            exec.shutdownExecutorService(es, future, chart);
+            Chart_RenderService.getShared().submit(chart).get();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
         }
@@ -27,8 +27,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import uk.ac.leeds.ccg.chart.core.Chart_AgeGender;
+import uk.ac.leeds.ccg.chart.core.Chart_RenderService;
 import uk.ac.leeds.ccg.chart.data.Chart_AgeGenderBoxPlotData;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
@@ -107,15 +107,13 @@ public class Chart_AgeGenderBoxPlotExample extends Chart_AgeGender {
             int oomx = -2;
             int oomy = -2;
             RoundingMode rm = RoundingMode.HALF_UP;
-            ExecutorService es = Executors.newSingleThreadExecutor();
-            Chart_AgeGenderBoxPlotExample plot = new Chart_AgeGenderBoxPlotExample(e, es, file,
+            Chart_AgeGenderBoxPlotExample plot = new Chart_AgeGenderBoxPlotExample(e, null, file,
                     format, title, dataWidth, dataHeight, xAxisLabel, yAxisLabel,
                     drawOriginLinesOnPlot, ageInterval, startAgeOfEndYearInterval,
                     oomx, oomy, rm);
             plot.setData(plot.getDefaultData());
             plot.vis.getHeadlessEnvironment();
-            //plot.run();
-            plot.start();
+            Chart_RenderService.getShared().submit(plot).get();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
 
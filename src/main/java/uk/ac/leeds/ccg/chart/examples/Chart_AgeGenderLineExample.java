@@ -27,8 +27,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import uk.ac.leeds.ccg.chart.core.Chart_AgeGender;
+import uk.ac.leeds.ccg.chart.core.Chart_RenderService;
 import uk.ac.leeds.ccg.chart.data.Chart_AgeGenderData;
 import uk.ac.leeds.ccg.chart.data.Chart_AgeGenderLineData;
 import uk.ac.leeds.ccg.chart.data.Chart_Data;
@@ -112,14 +112,13 @@ public class Chart_AgeGenderLineExample extends Chart_AgeGender {
             int oomx = -2;
             int oomy = -1;
             RoundingMode rm = RoundingMode.HALF_UP;
-            ExecutorService es = Executors.newSingleThreadExecutor();
-            Chart_AgeGenderLineExample plot = new Chart_AgeGenderLineExample(e, es, file,
+            Chart_AgeGenderLineExample plot = new Chart_AgeGenderLineExample(e, null, file,
                     format, title, dataWidth, dataHeight, xAxisLabel,
                     yAxisLabel, drawOriginLinesOnPlot, ageInterval,
                     startAgeOfEndYearInterval, oomx, oomy, rm);
             plot.setData(plot.getDefaultData());
             plot.vis.getHeadlessEnvironment();
-            plot.run();
+            Chart_RenderService.getShared().submit(plot).get();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
 
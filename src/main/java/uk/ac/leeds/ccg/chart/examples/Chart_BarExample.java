@@ -27,12 +27,11 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import uk.ac.leeds.ccg.chart.core.Chart_Bar;
+import uk.ac.leeds.ccg.chart.core.Chart_RenderService;
 import uk.ac.leeds.ccg.chart.data.Chart_BarData;
+import uk.ac.leeds.ccg.chart.execution.Chart_RenderStage;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
-import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.math.util.Math_Collections;
 import uk.ac.leeds.ccg.math.util.Math_Collections.CountsLabelsMins;
@@ -107,7 +106,7 @@ public class Chart_BarExample extends Chart_Bar {
             }
             int col = getCol(centre) + barGap;
             setPaint(Color.DARK_GRAY);
-            fillRect(col, row, barWidth, barHeight);
+            fillDataRect(col, row, barWidth, barHeight);
         }
     }
 
@@ -154,17 +153,14 @@ public class Chart_BarExample extends Chart_Bar {
             int oomx = -2;
             int oomy = -1;
             RoundingMode rm = RoundingMode.HALF_UP;
-            ExecutorService es = Executors.newSingleThreadExecutor();
-            Chart_BarExample chart = new Chart_BarExample(e, es, file, format, title,
+            Chart_BarExample chart = new Chart_BarExample(e, null, file, format, title,
                     dataWidth, dataHeight, xAxisLabel, yAxisLabel,
                     drawOriginLinesOnPlot, barGap, xIncrement, yMax, yPin,
                     yIncrement, numberOfYAxisTicks, oomx, oomy, rm);
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
-            chart.run();
-            Future future = chart.future;
-            Generic_Execution exec = new Generic_Execution(e);
-            exec.shutdownExecutorService(es, future, chart);
+            chart.setRasterRendering(true);
+            Chart_RenderService.getShared().submit(chart).get();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
         }
@@ -172,11 +168,11 @@ public class Chart_BarExample extends Chart_Bar {
 
     @Override
     public Dimension draw() {
-        drawOutline();
-        drawTitle(title);
-        drawAxes(2);
+        stage(Chart_RenderStage.OUTLINE, this::drawOutline);
+        stage(Chart_RenderStage.TITLE, () -> drawTitle(title));
+        stage(Chart_RenderStage.AXES, () -> drawAxes(2));
 //        drawAxes(getAgeInterval(), getStartAgeOfEndYearInterval());
-        drawData();
+        stage(Chart_RenderStage.DATA, this::drawData);
         Dimension newDim = new Dimension(imageWidth, imageHeight);
         return newDim;
     }
@@ -235,10 +231,11 @@ public class Chart_BarExample extends Chart_Bar {
             imageWidth += xAxisExtraWidthRight - extraWidthRight;
             extraWidthRight = xAxisExtraWidthRight;
         }
-        xAxisHeight += xAxisExtraHeightBottom;
+        xAxisHeight = xAxisExtraHeightBottom;
         if (xAxisExtraHeightBottom > extraHeightBottom) {
             int diff = xAxisExtraHeightBottom - extraHeightBottom;
             imageHeight += diff;
+            extraHeightBottom = xAxisExtraHeightBottom;
         }
     }
 
@@ -25,14 +25,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import uk.ac.leeds.ccg.chart.core.Chart_Line;
+import uk.ac.leeds.ccg.chart.core.Chart_LineReduction;
+import uk.ac.leeds.ccg.chart.core.Chart_M4;
+import uk.ac.leeds.ccg.chart.core.Chart_Marker;
+import uk.ac.leeds.ccg.chart.core.Chart_RenderService;
 import uk.ac.leeds.ccg.chart.data.Chart_LineData;
+import uk.ac.leeds.ccg.chart.data.Chart_LineSeries;
+import uk.ac.leeds.ccg.chart.execution.Chart_RenderStage;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
-import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.math.util.Math_Collections;
 
@@ -46,6 +50,12 @@ public class Chart_LineExample extends Chart_Line {
      */
     boolean drawYZero;
 
+    /**
+     * Reused for the columns and rows of the points of a series.
+     */
+    private int[] cols;
+    private int[] rows;
+
     public Chart_LineExample(Generic_Environment e) {
         super(e);
     }
@@ -90,7 +100,7 @@ public class Chart_LineExample extends Chart_Line {
 
     @Override
     public void drawData() {
-        TreeMap<String, TreeMap<BigRational, BigRational>> maps = getData().maps;
+        TreeMap<String, Chart_LineSeries> maps = getData().maps;
         TreeMap<String, Boolean> nonZero = getData().nonZero;
         Color[] colours;
         colours = getColours();
@@ -100,7 +110,7 @@ public class Chart_LineExample extends Chart_Line {
             String type;
             type = ite.next();
             if (nonZero == null) {
-                TreeMap<BigRational, BigRational> map;
+                Chart_LineSeries map;
                 map = maps.get(type);
                 int j = i;
                 while (j >= colours.length) {
@@ -110,7 +120,7 @@ public class Chart_LineExample extends Chart_Line {
                 i++;
             } else {
                 if (nonZero.get(type)) {
-                    TreeMap<BigRational, BigRational> map;
+                    Chart_LineSeries map;
                     map = maps.get(type);
                     int j = i;
                     while (j >= colours.length) {
@@ -124,35 +134,80 @@ public class Chart_LineExample extends Chart_Line {
     }
 
     /**
-     * @param map The map to draw.
+     * Draws the points of map within the x range of the data (and the points
+     * either side of it), first reducing them as set by {@link #reduction} if
+     * that is not {@link Chart_LineReduction#NONE}.
+     *
+     * @param map The series to draw.
+     * @param c The colour.
+     */
+    public void drawMap(Chart_LineSeries map, Color c) {
+        int from = getFromIndex(map);
+        int to = getToIndex(map);
+        if (reduction == Chart_LineReduction.M4) {
+            drawM4(aggregate(map, from, to), c);
+        } else if (reduction == Chart_LineReduction.NONE) {
+            drawSeries(map.getXs(), map.getYs(), from, to, c);
+        } else {
+            double[][] r = reduce(map, from, to);
+            drawSeries(r[0], r[1], 0, r[0].length, c);
+        }
+    }
+
+    /**
+     * Draws the series xs[i], ys[i] for i in [from, to) as lines joining the
+     * points stroked as one path with
+     * {@link #drawLines(int[], int[], int)}. A cross is drawn at each point
+     * with {@link #drawMarkers(int[], int[], int, Chart_Marker, int)} if the
+     * points are far enough apart (see
+     * {@link #isMarked(int, int, long)}).
+     *
+     * @param xs The x values in order.
+     * @param ys The y values.
+     * @param from The index of the first point.
+     * @param to The index after the last point.
      * @param c The colour.
      */
-    public void drawMap(TreeMap<BigRational, BigRational> map, Color c) {
-        int length;
-        length = 3;
-        int row0 = 0;
-        int col0 = 0;
+    public void drawSeries(double[] xs, double[] ys, int from, int to,
+            Color c) {
+        int n = to - from;
+        if (n < 2) {
+            return;
+        }
+        if (cols == null || cols.length < n) {
+            cols = new int[n];
+            rows = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            cols[i] = getCol(xs[from + i]);
+            rows[i] = getRow(ys[from + i]);
+        }
         setPaint(c);
-        boolean first = true;
-        for (BigRational x : map.keySet()) {
-            BigRational y = map.get(x);
-            int row = getRow(y);
-            int col = getCol(x);
-            if (first) {
-                row0 = row;
-                col0 = col;
-                first = false;
-            } else {
-                //setPaint(c);
-//                drawPlus(col0, row0, length);
-                drawCross(col0, row0, length);
-//                drawPlus(col, row, length);
-                drawCross(col, row, length);
-                Line2D line = new Line2D.Double(col0, row0, col, row);
-                draw(line);
-                row0 = row;
-                col0 = col;
-            }
+        drawLines(cols, rows, n);
+        if (isMarked(cols[0], cols[n - 1], n)) {
+            drawMarkers(cols, rows, n, Chart_Marker.CROSS, 3);
+        }
+    }
+
+    /**
+     * Draws an aggregated series so that it looks the same as
+     * {@link #drawSeries(double[], double[], int, int, Color)} drawing every
+     * point: lines joining the points kept and, if the points aggregated are
+     * far enough apart, a cross on each distinct pixel.
+     *
+     * @param m4 The aggregate.
+     * @param c The colour.
+     */
+    public void drawM4(Chart_M4 m4, Color c) {
+        if (m4.getCount() < 2) {
+            return;
+        }
+        setPaint(c);
+        int[] m4Cols = m4.getCols();
+        drawLines(m4Cols, m4.getRows(), m4.size());
+        if (isMarked(m4Cols[0], m4Cols[m4.size() - 1], m4.getCount())) {
+            drawMarkers(m4.getMarkerCols(), m4.getMarkerRows(),
+                    m4.getMarkerSize(), Chart_Marker.CROSS, 3);
         }
     }
 
@@ -216,16 +271,12 @@ public class Chart_LineExample extends Chart_Line {
             int oomx = -2;
             int oomy = -1;
             RoundingMode rm = RoundingMode.HALF_UP;
-            ExecutorService es = Executors.newSingleThreadExecutor();
-            Chart_LineExample chart = new Chart_LineExample(e, es, file, format, title,
+            Chart_LineExample chart = new Chart_LineExample(e, null, file, format, title,
                     dataWidth, dataHeight, xAxisLabel, yAxisLabel, yMax, yPin,
                     yIncrement, numberOfYAxisTicks, drawYZero, oomx, oomy, rm);
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
-            chart.run();
-            Future<?> future = chart.future;
-            Generic_Execution exec = new Generic_Execution(e);
-            exec.shutdownExecutorService(es, future, chart);
+            Chart_RenderService.getShared().submit(chart).get();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
         }
@@ -234,19 +285,21 @@ public class Chart_LineExample extends Chart_Line {
 
     @Override
     public Dimension draw() {
-        drawOutline();
-        drawTitle(title);
-        drawAxes();
-        if (drawYZero) {
-            Line2D ab;
-            // Draw Y axis scale to the left side
-            setPaint(Color.LIGHT_GRAY);
-            int zero = getRow(BigRational.ZERO);
-            ab = new Line2D.Double(dataStartCol, zero, dataEndCol, zero);
-            draw(ab);
-        }
-        drawData();
-        drawLegend();
+        stage(Chart_RenderStage.OUTLINE, this::drawOutline);
+        stage(Chart_RenderStage.TITLE, () -> drawTitle(title));
+        stage(Chart_RenderStage.AXES, () -> {
+            drawAxes();
+            if (drawYZero) {
+                Line2D ab;
+                // Draw Y axis scale to the left side
+                setPaint(Color.LIGHT_GRAY);
+                int zero = getRow(BigRational.ZERO);
+                ab = new Line2D.Double(dataStartCol, zero, dataEndCol, zero);
+                draw(ab);
+            }
+        });
+        stage(Chart_RenderStage.DATA, this::drawData);
+        stage(Chart_RenderStage.LEGEND, this::drawLegend);
         Dimension newDim = new Dimension(imageWidth, imageHeight);
         return newDim;
     }
@@ -292,7 +345,7 @@ public class Chart_LineExample extends Chart_Line {
             imageWidth += diff;
             dataStartCol += diff;
             dataEndCol += diff;
-//            extraWidthLeft = xAxisExtraWidthLeft;
+            extraWidthLeft = xAxisExtraWidthLeft;
             yAxisWidth += diff;
             setYAxisWidth(yAxisWidth);
 //            setOriginCol();
@@ -335,7 +388,7 @@ public class Chart_LineExample extends Chart_Line {
         map.put(BigRational.valueOf(52.0d), BigRational.valueOf(35.0d));
         map.put(BigRational.valueOf(53.0d), BigRational.valueOf(36.0d));
         map.put(BigRational.valueOf(54.0d), BigRational.valueOf(37.0d));
-        r.maps.put("map1", map);
+        r.maps.put("map1", new Chart_LineSeries(map));
         TreeMap<BigRational, BigRational> map2 = new TreeMap<>();
         map2.put(BigRational.valueOf(0.0d), BigRational.valueOf(9.0d));
         map2.put(BigRational.valueOf(6.0d), BigRational.valueOf(10.0d));
@@ -356,7 +409,7 @@ public class Chart_LineExample extends Chart_Line {
         map2.put(BigRational.valueOf(52.0d), BigRational.valueOf(25.0d));
         map2.put(BigRational.valueOf(53.0d), BigRational.valueOf(37.0d));
         map2.put(BigRational.valueOf(54.0d), BigRational.valueOf(37.0d));
-        r.maps.put("map2", map2);
+        r.maps.put("map2", new Chart_LineSeries(map2));
         ArrayList<BigRational> minMax = Math_Collections.getMinMax(map);
         minY = minMax.get(0);
         maxY = minMax.get(1);
@@ -409,6 +462,20 @@ public class Chart_LineExample extends Chart_Line {
         extraHeightTop += maxY.divide(getCellHeight()).integerPart().toBigDecimal().intValue();
     }
 
+    /**
+     * The legend lists the series so they are added to the key.
+     *
+     * @return The layout key.
+     */
+    @Override
+    public List<Object> getLayoutKey() {
+        List<Object> r = new ArrayList<>(super.getLayoutKey());
+        r.add(new ArrayList<>(getData().maps.keySet()));
+        r.add(getData().nonZero2 == null ? null
+                : new TreeMap<>(getData().nonZero2));
+        return r;
+    }
+
     protected void drawLegend() {
 //        TreeMap<String, TreeMap<BigDecimal, BigDecimal>> maps;
 //        maps = (TreeMap<String, TreeMap<BigDecimal, BigDecimal>>) data[0];
@@ -482,7 +549,9 @@ public class Chart_LineExample extends Chart_Line {
                 }
             }
         }
-        legendHeight = newLegendHeight;
-        imageHeight += newLegendHeight;
+        if (newLegendHeight > legendHeight) {
+            imageHeight += newLegendHeight - legendHeight;
+            legendHeight = newLegendHeight;
+        }
     }
 }
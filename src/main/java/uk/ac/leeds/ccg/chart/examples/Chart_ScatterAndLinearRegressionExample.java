@@ -15,7 +15,6 @@
  */
 package uk.ac.leeds.ccg.chart.examples;
 
-import ch.obermuhlner.math.big.BigRational;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.geom.Line2D;
@@ -27,15 +26,15 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import org.apache.commons.math3.stat.regression.SimpleRegression;
 //import org.apache.commons.math.stat.regression.SimpleRegression;
+import uk.ac.leeds.ccg.chart.core.Chart_RenderService;
 import uk.ac.leeds.ccg.chart.data.Chart_ID;
 import uk.ac.leeds.ccg.chart.data.Chart_Point;
+import uk.ac.leeds.ccg.chart.data.Chart_ColumnarScatterData;
 import uk.ac.leeds.ccg.chart.data.Chart_ScatterData;
+import uk.ac.leeds.ccg.chart.execution.Chart_RenderStage;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
-import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 
 /**
@@ -103,18 +102,14 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
             int oomx = -2;
             int oomy = -1;
             RoundingMode rm = RoundingMode.HALF_UP;
-            ExecutorService es = Executors.newSingleThreadExecutor();
             Chart_ScatterAndLinearRegressionExample chart;
-            chart = new Chart_ScatterAndLinearRegressionExample(e, es, file, format,
+            chart = new Chart_ScatterAndLinearRegressionExample(e, null, file, format,
                     title, dataWidth, dataHeight, xAxisLabel, yAxisLabel,
                     drawOriginLinesOnPlot, oomx, oomy, rm);
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
             chart.addLegend = true;
-            chart.run();
-            Future<?> future = chart.future;
-            Generic_Execution exec = new Generic_Execution(e);
-            exec.shutdownExecutorService(es, future, chart);
+            Chart_RenderService.getShared().submit(chart).get();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
         }
@@ -122,18 +117,20 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
 
     @Override
     public void drawData() {
+        Chart_ScatterData d = getData();
         double[][] dataD;
-        dataD = getDataAsDoubleArray(getData().data);
-        drawYEqualsXLineData(dataD);
+        dataD = getDataAsDoubleArray(d);
+        int n = getDataSize(d);
+        drawYEqualsXLineData(dataD, n);
         /**
          * rp[0] is the y axis intercept;
          * rp[1] is the change in y relative to x (gradient or slope);
          * rp[2] is the rank correlation coefficient (RSquare);
-         * rp[3] is data[0].length.
+         * rp[3] is n.
          */
         double[] rp;
-        rp = getSimpleRegressionParameters(dataD);
-        drawRegressionLine(rp, dataD);
+        rp = getSimpleRegressionParameters(dataD, n);
+        drawRegressionLine(rp, dataD, n);
         drawPoints(Color.DARK_GRAY, getData());
         if (addLegend) {
             drawLegend(rp);
@@ -142,20 +139,29 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
 
     @Override
     public Dimension draw() {
-        drawOutline();
-        drawTitle(title);
+        stage(Chart_RenderStage.OUTLINE, this::drawOutline);
+        stage(Chart_RenderStage.TITLE, () -> drawTitle(title));
         //System.out.println("dataStartCol " + dataStartCol);
-        drawAxes();
+        stage(Chart_RenderStage.AXES, this::drawAxes);
         if (data == null) {
             data = getDefaultData();
         }
-        Chart_ScatterData d = getData();
-        drawPoints(Color.DARK_GRAY, d);
-        drawData();
+        stage(Chart_RenderStage.DATA, () -> {
+            drawPoints(Color.DARK_GRAY, getData());
+            drawData();
+        });
         Dimension newDim = new Dimension(imageWidth, imageHeight);
         return newDim;
     }
 
+    /**
+     * @return {@code true} as the legend is drawn with the data.
+     */
+    @Override
+    protected boolean isLayoutDataDependent() {
+        return true;
+    }
+
     /**
      * @param rp rp[0] is the y axis intercept; rp[1] is the change in y
      * relative to x (gradient or slope); rp[2] is the rank correlation
@@ -340,7 +346,32 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
     }
 
     protected double[][] getDataAsDoubleArray() {
-        return getDataAsDoubleArray(getData().data);
+        return getDataAsDoubleArray(getData());
+    }
+
+    /**
+     * @param data The data.
+     * @return The data as a double[2][] where data[0][] are the y values and
+     * data[1][] are the x values. For {@link Chart_ColumnarScatterData} these
+     * are its arrays rather than copies, which may be longer than the data,
+     * so only the first {@link #getDataSize(Chart_ScatterData)} are values.
+     */
+    protected double[][] getDataAsDoubleArray(Chart_ScatterData data) {
+        if (data instanceof Chart_ColumnarScatterData c) {
+            return new double[][]{c.getYs(), c.getXs()};
+        }
+        return getDataAsDoubleArray(data.data);
+    }
+
+    /**
+     * @param data The data.
+     * @return The number of points in data.
+     */
+    protected int getDataSize(Chart_ScatterData data) {
+        if (data instanceof Chart_ColumnarScatterData c) {
+            return c.size();
+        }
+        return data.data.size();
     }
 
     protected double[][] getDataAsDoubleArray(
@@ -362,28 +393,51 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
     }
 
     protected void drawYEqualsXLineData(double[][] dataAsDoubleArray) {
+        drawYEqualsXLineData(dataAsDoubleArray, dataAsDoubleArray[0].length);
+    }
+
+    /**
+     * @param dataAsDoubleArray The data as from
+     * {@link #getDataAsDoubleArray(Chart_ScatterData)}.
+     * @param n The number of values in dataAsDoubleArray.
+     */
+    protected void drawYEqualsXLineData(double[][] dataAsDoubleArray,
+            int n) {
         double[][] yEqualsXLineData = getYEqualsXLineData(
-                dataAsDoubleArray);
+                dataAsDoubleArray, n);
         setPaint(Color.LIGHT_GRAY);
         draw(new Line2D.Double(
-                getCol(BigRational.valueOf(yEqualsXLineData[1][0])),
-                getRow(BigRational.valueOf(yEqualsXLineData[0][0])),
-                getCol(BigRational.valueOf(yEqualsXLineData[1][1])),
-                getRow(BigRational.valueOf(yEqualsXLineData[0][1]))));
+                getCol(yEqualsXLineData[1][0]),
+                getRow(yEqualsXLineData[0][0]),
+                getCol(yEqualsXLineData[1][1]),
+                getRow(yEqualsXLineData[0][1])));
     }
 
     protected void drawRegressionLine(
             double[] rp,
             double[][] dataAsDoubleArray) {
+        drawRegressionLine(rp, dataAsDoubleArray, dataAsDoubleArray[0].length);
+    }
+
+    /**
+     * @param rp As from {@link #getSimpleRegressionParameters(double[][])}.
+     * @param dataAsDoubleArray The data as from
+     * {@link #getDataAsDoubleArray(Chart_ScatterData)}.
+     * @param n The number of values in dataAsDoubleArray.
+     */
+    protected void drawRegressionLine(
+            double[] rp,
+            double[][] dataAsDoubleArray,
+            int n) {
         double[][] regressionLineXYLineData = getXYLineData(
-                dataAsDoubleArray,
+                dataAsDoubleArray, n,
                 rp);
         setPaint(Color.BLACK);
         draw(new Line2D.Double(
-                getCol(BigRational.valueOf(regressionLineXYLineData[1][0])),
-                getRow(BigRational.valueOf(regressionLineXYLineData[0][0])),
-                getCol(BigRational.valueOf(regressionLineXYLineData[1][1])),
-                getRow(BigRational.valueOf(regressionLineXYLineData[0][1]))));
+                getCol(regressionLineXYLineData[1][0]),
+                getRow(regressionLineXYLineData[0][0]),
+                getCol(regressionLineXYLineData[1][1]),
+                getRow(regressionLineXYLineData[0][1])));
 //                getCol(BigDecimal.valueOf(regressionLineXYLineData[0][1])),
 //                getRow(BigDecimal.valueOf(regressionLineXYLineData[1][0])),
 //                getCol(BigDecimal.valueOf(regressionLineXYLineData[0][0])),
@@ -399,18 +453,32 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
      * (RSquare);</li> <li>result[3] is data[0].length.</li> </ul>
      */
     public static double[] getSimpleRegressionParameters(double[][] data) {
+        return getSimpleRegressionParameters(data, data[0].length);
+    }
+
+    /**
+     * @param data double[2][] where: data[0][] are the y values data[1][] are
+     * the x values
+     * @param n The number of values in data[0] and data[1] to use.
+     * @return double[] result where: <ul> <li>result[0] is the y axis
+     * intercept;</li> <li>result[1] is the change in y relative to x (gradient
+     * or slope);</li> <li>result[2] is the rank correlation coefficient
+     * (RSquare);</li> <li>result[3] is n.</li> </ul>
+     */
+    public static double[] getSimpleRegressionParameters(double[][] data,
+            int n) {
         double[] result = new double[4];
         // org.apache.commons.math.stat.regression.SimpleRegression;
         SimpleRegression a_SimpleRegression = new SimpleRegression();
         //System.out.println("data.length " + data[0].length);
-        for (int i = 0; i < data[0].length; i++) {
+        for (int i = 0; i < n; i++) {
             a_SimpleRegression.addData(data[1][i], data[0][i]);
             //aSimpleRegression.addData(data[0][i], data[1][i]);
         }
         result[0] = a_SimpleRegression.getIntercept();
         result[1] = a_SimpleRegression.getSlope();
         result[2] = a_SimpleRegression.getRSquare();
-        result[3] = data[0].length;
+        result[3] = n;
         return result;
     }
 
@@ -420,12 +488,23 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
      * @return double[][] r the line
      */
     public static double[][] getXYLineData(double[][] data, double[] lp) {
+        return getXYLineData(data, data[0].length, lp);
+    }
+
+    /**
+     * @param data Data.
+     * @param n The number of values in data[0] and data[1] to use.
+     * @param lp lineParameters
+     * @return double[][] r the line
+     */
+    public static double[][] getXYLineData(double[][] data, int n,
+            double[] lp) {
         double[][] r = new double[2][2];
         double miny = Double.MAX_VALUE;
         double maxy = -Double.MAX_VALUE;
         double minx = Double.MAX_VALUE;
         double maxx = -Double.MAX_VALUE;
-        for (int j = 0; j < data[0].length; j++) {
+        for (int j = 0; j < n; j++) {
             minx = Math.min(minx, data[0][j]);
             maxx = Math.max(maxx, data[0][j]);
             miny = Math.min(miny, data[1][j]);
@@ -511,6 +590,15 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
      * @return The y equals x line.
      */
     public static double[][] getYEqualsXLineData(double[][] data) {
+        return getYEqualsXLineData(data, data[0].length);
+    }
+
+    /**
+     * @param data The data
+     * @param n The number of values in data[0] and data[1] to use.
+     * @return The y equals x line.
+     */
+    public static double[][] getYEqualsXLineData(double[][] data, int n) {
         double[][] lineChartData = new double[2][2];
         // minx is the minimum x value in data[1]
         double minx = Double.MAX_VALUE;
@@ -520,7 +608,7 @@ public class Chart_ScatterAndLinearRegressionExample extends Chart_ScatterExampl
         double miny = Double.MAX_VALUE;
         // maxy is the maximum y value in data[1]
         double maxy = -Double.MAX_VALUE;
-        for (int j = 0; j < data[0].length; j++) {
+        for (int j = 0; j < n; j++) {
             miny = Math.min(miny, data[0][j]);
             maxy = Math.max(maxy, data[0][j]);
             minx = Math.min(minx, data[1][j]);
@@ -18,7 +18,6 @@ package uk.ac.leeds.ccg.chart.examples;
 import ch.obermuhlner.math.big.BigRational;
 import java.awt.Color;
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
@@ -27,14 +26,14 @@ import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.core.Chart_Marker;
+import uk.ac.leeds.ccg.chart.core.Chart_RenderService;
 import uk.ac.leeds.ccg.chart.data.Chart_ID;
+import uk.ac.leeds.ccg.chart.data.Chart_ColumnarScatterData;
 import uk.ac.leeds.ccg.chart.data.Chart_ScatterData;
 import uk.ac.leeds.ccg.chart.data.Chart_Point;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
-import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.math.arithmetic.Math_BigDecimal;
 import uk.ac.leeds.ccg.math.arithmetic.Math_BigRational;
@@ -107,17 +106,15 @@ public class Chart_ScatterExample extends Chart {
             int oomx = -1;
             int oomy = -2;
             RoundingMode rm = RoundingMode.HALF_UP;
-            ExecutorService es = Executors.newSingleThreadExecutor();
             Chart_ScatterExample chart = new Chart_ScatterExample(e,
-                    es, file,
+                    null, file,
                     format, title, dataWidth, dataHeight, xAxisLabel,
                     yAxisLabel, drawOriginLinesOnPlot, oomx, oomy, rm);
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
-            chart.run();
-            Future<?> future = chart.future;
-            Generic_Execution exec = new Generic_Execution(e);
-            exec.shutdownExecutorService(es, future, chart);
+            chart.setRasterRendering(true);
+            chart.setTiles(Runtime.getRuntime().availableProcessors());
+            Chart_RenderService.getShared().submit(chart).get();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
         }
@@ -339,14 +336,42 @@ public class Chart_ScatterExample extends Chart {
         return r;
     }
 
+    /**
+     * Draws each point in data as an x cross. The points are transformed in
+     * batches into reused arrays and drawn using
+     * {@link #drawMarkers(double[], double[], int, Chart_Marker, int)}. With
+     * {@link #rasterRendering} set the crosses are written directly into the
+     * pixels of the image, in parallel if {@link #tiles} is greater than 1.
+     * The points of {@link Chart_ColumnarScatterData} are drawn directly from
+     * its arrays.
+     *
+     * @param color The colour to draw in.
+     * @param data The data to draw.
+     */
     protected void drawPoints(Color color, Chart_ScatterData data) {
-        if (data != null) {
+        if (data instanceof Chart_ColumnarScatterData c) {
+            setPaint(color);
+            drawMarkers(c.getXs(), c.getYs(), c.size(), Chart_Marker.CROSS, 4);
+        } else if (data != null) {
             Iterator<Chart_Point> ite = data.data.values().iterator();
             setPaint(color);
+            int size = Math.min(data.data.size(),
+                    tiles > 1 ? TILED_BATCH_SIZE : MARKER_BATCH_SIZE);
+            double[] xs = new double[size];
+            double[] ys = new double[size];
+            int n = 0;
             while (ite.hasNext()) {
                 Chart_Point xy = ite.next();
-                Point2D p = coordinateToScreen(xy.getX(), xy.getY());
-                draw(p);
+                xs[n] = xy.getX().toDouble();
+                ys[n] = xy.getY().toDouble();
+                n++;
+                if (n == size) {
+                    drawMarkers(xs, ys, n, Chart_Marker.CROSS, 4);
+                    n = 0;
+                }
+            }
+            if (n > 0) {
+                drawMarkers(xs, ys, n, Chart_Marker.CROSS, 4);
             }
         }
     }
@@ -24,5 +24,13 @@ import java.util.EventListener;
 public interface Chart_EventListener extends EventListener {
     
     public void renderingComplete(Chart_RenderingCompleteEvent e);
-    
+
+    /**
+     * Called when a stage of rendering is complete. By default this does
+     * nothing.
+     *
+     * @param e The event.
+     */
+    public default void stageComplete(Chart_RenderStageEvent e) {
+    }
 }
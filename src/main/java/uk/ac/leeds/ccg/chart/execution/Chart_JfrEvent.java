@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * A base for Java Flight Recorder events about a chart. When recording is off
+ * creating, beginning and committing these costs (next to) nothing, but the
+ * fields should only be set if {@link #shouldCommit()} returns {@code true}.
+ */
+@Category({"Chart"})
+@StackTrace(false)
+public abstract class Chart_JfrEvent extends jdk.jfr.Event {
+
+    @Label("Chart Class")
+    protected Class<?> chartClass;
+
+    @Label("Title")
+    protected String title;
+
+    @Label("Image Width")
+    protected int width;
+
+    @Label("Image Height")
+    protected int height;
+
+    @Label("Data Points")
+    protected long dataPoints;
+
+    @Label("Format")
+    protected String format;
+
+    /**
+     * Sets the fields that describe the chart.
+     *
+     * @param chartClass What {@link #chartClass} is set to.
+     * @param title What {@link #title} is set to.
+     * @param width What {@link #width} is set to.
+     * @param height What {@link #height} is set to.
+     * @param dataPoints What {@link #dataPoints} is set to.
+     * @param format What {@link #format} is set to.
+     */
+    public void setChart(Class<?> chartClass, String title, int width,
+            int height, long dataPoints, String format) {
+        this.chartClass = chartClass;
+        this.title = title;
+        this.width = width;
+        this.height = height;
+        this.dataPoints = dataPoints;
+        this.format = format;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the time a chart task waits in an executor
+ * queue. It begins when the task is submitted and is committed when the task
+ * starts to run.
+ */
+@Name("uk.ac.leeds.ccg.chart.QueueWait")
+@Label("Chart Queue Wait")
+@Description("Time a chart task waited in an executor queue")
+public class Chart_JfrQueueWaitEvent extends Chart_JfrEvent {
+
+    @Label("Task")
+    public String task;
+}
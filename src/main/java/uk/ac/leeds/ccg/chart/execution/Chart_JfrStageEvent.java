@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a {@link Chart_RenderStage} of drawing or
+ * encoding a chart.
+ */
+@Name("uk.ac.leeds.ccg.chart.DrawStage")
+@Label("Chart Draw Stage")
+@Description("A stage of drawing or encoding a chart")
+public class Chart_JfrStageEvent extends Chart_JfrEvent {
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Primitives")
+    @Description("The number of lines, rectangles, strings and markers drawn")
+    public long primitives;
+}
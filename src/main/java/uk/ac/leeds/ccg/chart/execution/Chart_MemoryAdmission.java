@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.util.TreeSet;
+
+/**
+ * Admits renders only while the memory they are estimated to need fits
+ * within a heap budget. A render that does not fit waits in a first come
+ * first served queue until enough of the budget is released. A render whose
+ * estimate exceeds the whole budget is admitted once nothing else is, so it
+ * runs alone rather than waiting forever.
+ */
+public class Chart_MemoryAdmission {
+
+    /**
+     * The default fraction of {@link Runtime#maxMemory()} used as a budget.
+     */
+    public static final double DEFAULT_BUDGET_FRACTION = 0.5d;
+
+    /**
+     * The shared instance, created on first use.
+     */
+    private static Chart_MemoryAdmission shared;
+
+    /**
+     * The number of bytes that can be in use at once.
+     */
+    private long budget;
+
+    /**
+     * The number of bytes in use by admitted renders.
+     */
+    private long used;
+
+    /**
+     * The number of renders admitted and not yet released.
+     */
+    private int admitted;
+
+    /**
+     * For queuing in order: the next ticket to issue and the ticket to admit
+     * next.
+     */
+    private long nextTicket;
+    private long nowServing;
+
+    /**
+     * Tickets of those that gave up waiting.
+     */
+    private final TreeSet<Long> skipped;
+
+    /**
+     * Create a new instance with a budget of {@link #DEFAULT_BUDGET_FRACTION}
+     * of {@link Runtime#maxMemory()}.
+     */
+    public Chart_MemoryAdmission() {
+        this((long) (Runtime.getRuntime().maxMemory()
+                * DEFAULT_BUDGET_FRACTION));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param budget What {@link #budget} is set to.
+     */
+    public Chart_MemoryAdmission(long budget) {
+        skipped = new TreeSet<>();
+        setBudget(budget);
+    }
+
+    /**
+     * @return The shared instance.
+     */
+    public static synchronized Chart_MemoryAdmission getShared() {
+        if (shared == null) {
+            shared = new Chart_MemoryAdmission();
+        }
+        return shared;
+    }
+
+    /**
+     * Waits until bytes fit within the budget and there is no one ahead in
+     * the queue, then reserves them. Each call must be paired with a call to
+     * {@link #release(long)} with the same bytes.
+     *
+     * @param bytes The estimated number of bytes needed.
+     * @throws InterruptedException If interrupted while waiting, in which case
+     * nothing is reserved.
+     */
+    public synchronized void acquire(long bytes) throws InterruptedException {
+        long ticket = nextTicket++;
+        try {
+            while (ticket != nowServing || !fits(bytes)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            if (ticket == nowServing) {
+                next();
+            } else {
+                skipped.add(ticket);
+            }
+            notifyAll();
+            throw e;
+        }
+        next();
+        used += bytes;
+        admitted++;
+        notifyAll();
+    }
+
+    /**
+     * Reserves bytes if they fit within the budget and no one is queued.
+     *
+     * @param bytes The estimated number of bytes needed.
+     * @return {@code true} if bytes were reserved in which case
+     * {@link #release(long)} must be called.
+     */
+    public synchronized boolean tryAcquire(long bytes) {
+        if (nextTicket != nowServing || !fits(bytes)) {
+            return false;
+        }
+        nextTicket++;
+        next();
+        used += bytes;
+        admitted++;
+        return true;
+    }
+
+    /**
+     * Releases bytes reserved by {@link #acquire(long)} or
+     * {@link #tryAcquire(long)}.
+     *
+     * @param bytes The number of bytes to release.
+     */
+    public synchronized void release(long bytes) {
+        used -= bytes;
+        admitted--;
+        notifyAll();
+    }
+
+    /**
+     * Moves {@link #nowServing} on to the next ticket of one still waiting.
+     */
+    private void next() {
+        nowServing++;
+        while (skipped.remove(nowServing)) {
+            nowServing++;
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return admitted == 0 || used + bytes <= budget;
+    }
+
+    /**
+     * @return {@link #budget}.
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget. Waiting renders are rechecked.
+     *
+     * @param budget What {@link #budget} is set to.
+     */
+    public synchronized void setBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("budget " + budget + " <= 0");
+        }
+        this.budget = budget;
+        notifyAll();
+    }
+
+    /**
+     * @return {@link #used}.
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return The fraction of {@link #budget} that is used.
+     */
+    public synchronized double getBudgetUse() {
+        return used / (double) budget;
+    }
+
+    /**
+     * @return The number of renders admitted and not yet released.
+     */
+    public synchronized int getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * @return The number of renders waiting to be admitted.
+     */
+    public synchronized int getQueueDepth() {
+        return (int) (nextTicket - nowServing - skipped.size());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "(budget=" + budget + ", used="
+                + used + ", admitted=" + admitted + ", queueDepth="
+                + getQueueDepth() + ")";
+    }
+}
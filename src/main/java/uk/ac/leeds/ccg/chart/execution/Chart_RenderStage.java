@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+/**
+ * The stages of rendering a chart and writing it to a file.
+ */
+public enum Chart_RenderStage {
+
+    /**
+     * Drawing the outline (background).
+     */
+    OUTLINE,
+
+    /**
+     * Drawing the title.
+     */
+    TITLE,
+
+    /**
+     * Drawing the axes.
+     */
+    AXES,
+
+    /**
+     * Drawing the data.
+     */
+    DATA,
+
+    /**
+     * Drawing a legend.
+     */
+    LEGEND,
+
+    /**
+     * Encoding the image.
+     */
+    ENCODE,
+
+    /**
+     * Writing the encoded image.
+     */
+    WRITE
+}
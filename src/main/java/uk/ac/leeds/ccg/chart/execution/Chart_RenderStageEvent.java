@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.util.EventObject;
+
+/**
+ * For notifying that a {@link Chart_RenderStage} of rendering a chart is
+ * complete.
+ */
+public class Chart_RenderStageEvent extends EventObject {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The stage.
+     */
+    protected final Chart_RenderStage stage;
+
+    /**
+     * The time taken in nanoseconds.
+     */
+    protected final long nanos;
+
+    /**
+     * The number of primitives (lines, rectangles, strings, markers) drawn.
+     */
+    protected final long primitives;
+
+    /**
+     * The width of the image.
+     */
+    protected final int width;
+
+    /**
+     * The height of the image.
+     */
+    protected final int height;
+
+    /**
+     * The number of bytes encoded or written.
+     */
+    protected final long bytes;
+
+    /**
+     * @param source The chart.
+     * @param stage What {@link #stage} is set to.
+     * @param nanos What {@link #nanos} is set to.
+     * @param primitives What {@link #primitives} is set to.
+     * @param width What {@link #width} is set to.
+     * @param height What {@link #height} is set to.
+     * @param bytes What {@link #bytes} is set to.
+     */
+    public Chart_RenderStageEvent(Object source, Chart_RenderStage stage,
+            long nanos, long primitives, int width, int height, long bytes) {
+        super(source);
+        this.stage = stage;
+        this.nanos = nanos;
+        this.primitives = primitives;
+        this.width = width;
+        this.height = height;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return {@link #stage}.
+     */
+    public Chart_RenderStage getStage() {
+        return stage;
+    }
+
+    /**
+     * @return {@link #nanos}.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return {@link #primitives}.
+     */
+    public long getPrimitives() {
+        return primitives;
+    }
+
+    /**
+     * @return {@link #width}.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return {@link #height}.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return {@link #bytes}.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.util.EnumMap;
+
+/**
+ * A {@link Chart_EventListener} that records the time taken by each
+ * {@link Chart_RenderStage} and by each render as a whole in fixed size
+ * histograms, so that percentiles can be reported by a long running process
+ * without the memory used or the time taken growing. Register it with
+ * {@link uk.ac.leeds.ccg.chart.core.Chart#addEventListener(Chart_EventListener)}.
+ * It can be shared by charts rendered on different threads.
+ */
+public class Chart_RenderStatistics implements Chart_EventListener {
+
+    /**
+     * Times in nanoseconds of each stage.
+     */
+    private final EnumMap<Chart_RenderStage, Samples> stages;
+
+    /**
+     * Times in nanoseconds of whole renders.
+     */
+    private final Samples renders;
+
+    /**
+     * Totals of primitives drawn and bytes written.
+     */
+    private long primitives;
+    private long bytes;
+
+    /**
+     * A histogram of times in a fixed number of buckets of logarithmically
+     * increasing width, so recording and percentiles take constant time and
+     * memory however many times are recorded. Times less than
+     * {@link #SUB_BUCKETS} are counted exactly and larger times in buckets
+     * {@code 1 / SUB_BUCKETS} of the power of 2 below them wide, so
+     * percentiles are at most about 1.6% above the time recorded.
+     */
+    private static class Samples {
+
+        /**
+         * The log base 2 of {@link #SUB_BUCKETS}.
+         */
+        static final int SUB_BUCKET_BITS = 6;
+
+        /**
+         * The number of buckets for each power of 2.
+         */
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        final long[] counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+        int n;
+        long max;
+
+        void add(long v) {
+            v = Math.max(0L, v);
+            counts[index(v)]++;
+            n++;
+            max = Math.max(max, v);
+        }
+
+        /**
+         * @param v A time.
+         * @return The index of the bucket for v.
+         */
+        static int index(long v) {
+            if (v < SUB_BUCKETS) {
+                return (int) v;
+            }
+            int e = 63 - Long.numberOfLeadingZeros(v);
+            int shift = e - SUB_BUCKET_BITS;
+            return ((shift + 1) << SUB_BUCKET_BITS)
+                    + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * @param i The index of a bucket.
+         * @return The largest time in the bucket.
+         */
+        static long upper(int i) {
+            if (i < SUB_BUCKETS) {
+                return i;
+            }
+            int shift = (i >>> SUB_BUCKET_BITS) - 1;
+            long lower = (long) (SUB_BUCKETS + (i & (SUB_BUCKETS - 1)))
+                    << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        long percentile(double p) {
+            if (n == 0) {
+                return -1;
+            }
+            long rank = Math.max(1L, Math.min(n,
+                    (long) Math.ceil(p / 100d * n)));
+            long c = 0;
+            for (int i = 0; i < counts.length; i++) {
+                c += counts[i];
+                if (c >= rank) {
+                    return Math.min(max, upper(i));
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Create a new instance.
+     */
+    public Chart_RenderStatistics() {
+        stages = new EnumMap<>(Chart_RenderStage.class);
+        for (Chart_RenderStage s : Chart_RenderStage.values()) {
+            stages.put(s, new Samples());
+        }
+        renders = new Samples();
+    }
+
+    @Override
+    public synchronized void stageComplete(Chart_RenderStageEvent e) {
+        stages.get(e.getStage()).add(e.getNanos());
+    }
+
+    @Override
+    public synchronized void renderingComplete(Chart_RenderingCompleteEvent e) {
+        if (e.getNanos() >= 0) {
+            renders.add(e.getNanos());
+        }
+        primitives += Math.max(0, e.getPrimitives());
+        bytes += Math.max(0, e.getBytes());
+    }
+
+    /**
+     * @param stage The stage.
+     * @return The number of times stage has been recorded.
+     */
+    public synchronized int getCount(Chart_RenderStage stage) {
+        return stages.get(stage).n;
+    }
+
+    /**
+     * @param stage The stage.
+     * @param p The percentile (0 to 100).
+     * @return The p-th percentile (nearest rank) of the times in nanoseconds
+     * of stage, to within about 1.6% above, or -1 if there are none.
+     */
+    public synchronized long getPercentile(Chart_RenderStage stage, double p) {
+        return stages.get(stage).percentile(p);
+    }
+
+    /**
+     * @return The number of renders recorded.
+     */
+    public synchronized int getRenderCount() {
+        return renders.n;
+    }
+
+    /**
+     * @param p The percentile (0 to 100).
+     * @return The p-th percentile (nearest rank) of the times in nanoseconds
+     * of whole renders, to within about 1.6% above, or -1 if there are none.
+     */
+    public synchronized long getRenderPercentile(double p) {
+        return renders.percentile(p);
+    }
+
+    /**
+     * @return The total number of primitives drawn in renders recorded.
+     */
+    public synchronized long getPrimitives() {
+        return primitives;
+    }
+
+    /**
+     * @return The total number of bytes written in renders recorded.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Chart_RenderStage s : Chart_RenderStage.values()) {
+            Samples ss = stages.get(s);
+            if (ss.n > 0) {
+                sb.append(String.format("%-8s n=%d p50=%.3fms p90=%.3fms"
+                        + " p99=%.3fms%n", s, ss.n, ss.percentile(50) / 1e6,
+                        ss.percentile(90) / 1e6, ss.percentile(99) / 1e6));
+            }
+        }
+        sb.append(String.format("render   n=%d p50=%.3fms p90=%.3fms"
+                + " p99=%.3fms primitives=%d bytes=%d", renders.n,
+                renders.percentile(50) / 1e6, renders.percentile(90) / 1e6,
+                renders.percentile(99) / 1e6, primitives, bytes));
+        return sb.toString();
+    }
+}
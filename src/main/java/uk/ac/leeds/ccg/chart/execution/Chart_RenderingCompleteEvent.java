@@ -24,9 +24,87 @@ import java.util.EventObject;
 public class Chart_RenderingCompleteEvent extends EventObject {
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * The time taken in nanoseconds from the start of rendering until the
+     * image was written, or -1 if not known.
+     */
+    protected final long nanos;
+
+    /**
+     * The number of primitives drawn, or -1 if not known.
+     */
+    protected final long primitives;
+
+    /**
+     * The width of the image, or -1 if not known.
+     */
+    protected final int width;
+
+    /**
+     * The height of the image, or -1 if not known.
+     */
+    protected final int height;
+
+    /**
+     * The number of bytes written, or -1 if not known.
+     */
+    protected final long bytes;
     
         public Chart_RenderingCompleteEvent(Object source) {
-                super(source);
+                this(source, -1, -1, -1, -1, -1);
         }
-    
+
+    /**
+     * @param source The source.
+     * @param nanos What {@link #nanos} is set to.
+     * @param primitives What {@link #primitives} is set to.
+     * @param width What {@link #width} is set to.
+     * @param height What {@link #height} is set to.
+     * @param bytes What {@link #bytes} is set to.
+     */
+    public Chart_RenderingCompleteEvent(Object source, long nanos,
+            long primitives, int width, int height, long bytes) {
+        super(source);
+        this.nanos = nanos;
+        this.primitives = primitives;
+        this.width = width;
+        this.height = height;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return {@link #nanos}.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return {@link #primitives}.
+     */
+    public long getPrimitives() {
+        return primitives;
+    }
+
+    /**
+     * @return {@link #width}.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return {@link #height}.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return {@link #bytes}.
+     */
+    public long getBytes() {
+        return bytes;
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Chart_Lttb}.
+ */
+public class Chart_LttbTest {
+
+    @Test
+    public void testInPlaceSameAsCopy() {
+        Random r = new Random(17);
+        for (int n : new int[]{3, 10, 1001, 10000}) {
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = i + r.nextDouble();
+                ys[i] = r.nextGaussian();
+            }
+            for (int threshold : new int[]{3, 7, 100, n - 1}) {
+                if (threshold < 3 || threshold >= n) {
+                    continue;
+                }
+                double[] outXs = new double[threshold];
+                double[] outYs = new double[threshold];
+                int k = Chart_Lttb.downsample(xs, ys, n, threshold, outXs,
+                        outYs);
+                assertEquals(threshold, k);
+                assertEquals(xs[0], outXs[0]);
+                assertEquals(xs[n - 1], outXs[k - 1]);
+                for (int i = 1; i < k; i++) {
+                    assertTrue(outXs[i] > outXs[i - 1]);
+                }
+                double[] inXs = xs.clone();
+                double[] inYs = ys.clone();
+                int m = Chart_Lttb.downsample(inXs, inYs, n, threshold, inXs,
+                        inYs);
+                assertEquals(k, m);
+                assertArrayEquals(outXs, Arrays.copyOf(inXs, m),
+                        "n " + n + " threshold " + threshold);
+                assertArrayEquals(outYs, Arrays.copyOf(inYs, m));
+            }
+        }
+    }
+
+    @Test
+    public void testOffset() {
+        Random r = new Random(19);
+        int n = 500;
+        int offset = 123;
+        double[] xs = new double[offset + n];
+        double[] ys = new double[offset + n];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i;
+            ys[i] = r.nextDouble();
+        }
+        double[] outXs = new double[50];
+        double[] outYs = new double[50];
+        int k = Chart_Lttb.downsample(xs, ys, offset, n, 50, outXs, outYs);
+        double[] expectedXs = new double[50];
+        double[] expectedYs = new double[50];
+        int m = Chart_Lttb.downsample(Arrays.copyOfRange(xs, offset,
+                offset + n), Arrays.copyOfRange(ys, offset, offset + n), n,
+                50, expectedXs, expectedYs);
+        assertEquals(m, k);
+        assertArrayEquals(expectedXs, outXs);
+        assertArrayEquals(expectedYs, outYs);
+    }
+
+    @Test
+    public void testAllKept() {
+        double[] xs = {0, 1, 2, 3, 4};
+        double[] ys = {4, 2, 3, 0, 1};
+        for (int threshold : new int[]{0, 2, 5, 9}) {
+            double[] outXs = new double[5];
+            double[] outYs = new double[5];
+            assertEquals(5, Chart_Lttb.downsample(xs, ys, 5, threshold,
+                    outXs, outYs));
+            assertArrayEquals(xs, outXs);
+            assertArrayEquals(ys, outYs);
+        }
+    }
+}
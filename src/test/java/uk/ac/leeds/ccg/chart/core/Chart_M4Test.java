@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Chart_M4}.
+ */
+public class Chart_M4Test {
+
+    private static final int W = 200;
+    private static final int H = 150;
+
+    @Test
+    public void testLinePixelsIdentical() {
+        Random r = new Random(5);
+        for (int pointsPerColumn : new int[]{1, 3, 50}) {
+            int n = W * pointsPerColumn;
+            int[] cols = new int[n];
+            int[] rows = new int[n];
+            int row = H / 2;
+            for (int i = 0; i < n; i++) {
+                cols[i] = i / pointsPerColumn;
+                row = Math.max(-20, Math.min(H + 20,
+                        row + r.nextInt(21) - 10));
+                rows[i] = row;
+            }
+            Chart_M4 m4 = new Chart_M4(0, H);
+            for (int i = 0; i < n; i++) {
+                m4.add(cols[i], rows[i]);
+            }
+            m4.flush();
+            assertEquals(n, m4.getCount());
+            assertTrue(m4.size() <= 4 * W);
+            assertArrayEquals(draw(cols, rows, n),
+                    draw(m4.getCols(), m4.getRows(), m4.size()),
+                    "pointsPerColumn " + pointsPerColumn);
+        }
+    }
+
+    @Test
+    public void testLinePixelsIdenticalRevisitingColumns() {
+        Random r = new Random(9);
+        int n = 5000;
+        int[] cols = new int[n];
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            cols[i] = r.nextInt(W);
+            rows[i] = r.nextInt(H);
+        }
+        Chart_M4 m4 = new Chart_M4(0, H);
+        for (int i = 0; i < n; i++) {
+            m4.add(cols[i], rows[i]);
+        }
+        m4.flush();
+        assertArrayEquals(draw(cols, rows, n),
+                draw(m4.getCols(), m4.getRows(), m4.size()));
+    }
+
+    @Test
+    public void testMarkerPixelsDistinct() {
+        Random r = new Random(13);
+        int n = 20000;
+        Chart_M4 m4 = new Chart_M4(0, H);
+        Set<Long> expected = new HashSet<>();
+        int outside = 0;
+        for (int i = 0; i < n; i++) {
+            int col = i / 100;
+            int row = r.nextInt(H + 40) - 20;
+            m4.add(col, row);
+            if (row >= 0 && row <= H) {
+                expected.add(((long) col << 32) | row);
+            } else {
+                outside++;
+            }
+        }
+        m4.flush();
+        Set<Long> kept = new HashSet<>();
+        int keptOutside = 0;
+        for (int i = 0; i < m4.getMarkerSize(); i++) {
+            int col = m4.getMarkerCols()[i];
+            int row = m4.getMarkerRows()[i];
+            if (row >= 0 && row <= H) {
+                assertTrue(kept.add(((long) col << 32) | row),
+                        "duplicate " + col + "," + row);
+            } else {
+                keptOutside++;
+            }
+        }
+        assertEquals(expected, kept);
+        assertEquals(outside, keptOutside);
+    }
+
+    /**
+     * @return The pixels of the line joining the first n points drawn
+     * without antialiasing.
+     */
+    private static int[] draw(int[] cols, int[] rows, int n) {
+        BufferedImage image = new BufferedImage(W, H,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        for (int i = 1; i < n; i++) {
+            g.drawLine(cols[i - 1], rows[i - 1], cols[i], rows[i]);
+        }
+        g.dispose();
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link Chart_PngEncoder}.
+ */
+public class Chart_PngEncoderTest {
+
+    private static final int[] LEVELS = {0, 1, 6, 9,
+        Deflater.DEFAULT_COMPRESSION};
+
+    /**
+     * Block sizes that put one row, a few rows and all the rows in a block.
+     */
+    private static final int[] BLOCK_SIZES = {1, 300,
+        Chart_PngEncoder.DEFAULT_BLOCK_SIZE};
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random r = new Random(7);
+        for (boolean alpha : new boolean[]{false, true}) {
+            for (int[] size : new int[][]{{37, 29}, {1, 13}, {13, 1}}) {
+                BufferedImage image = newImage(r, size[0], size[1], alpha);
+                for (Chart_PngEncoder.Filter f
+                        : Chart_PngEncoder.Filter.values()) {
+                    for (int level : LEVELS) {
+                        for (int blockSize : BLOCK_SIZES) {
+                            assertRoundTrip(image, new Chart_PngEncoder(level,
+                                    f, blockSize), f + " level " + level
+                                    + " blockSize " + blockSize + " alpha "
+                                    + alpha + " " + size[0] + "x" + size[1]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTripNotIntArgb() throws IOException {
+        Random r = new Random(11);
+        BufferedImage argb = newImage(r, 23, 17, false);
+        BufferedImage image = new BufferedImage(23, 17,
+                BufferedImage.TYPE_3BYTE_BGR);
+        image.getGraphics().drawImage(argb, 0, 0, null);
+        for (Chart_PngEncoder.Filter f : Chart_PngEncoder.Filter.values()) {
+            assertRoundTrip(image, new Chart_PngEncoder(6, f, 100),
+                    f.toString());
+        }
+    }
+
+    @Test
+    public void testForFormat() {
+        Chart_PngEncoder e = Chart_PngEncoder.forFormat("png:fast,paeth");
+        assertEquals(Deflater.BEST_SPEED, e.getLevel());
+        assertEquals(Chart_PngEncoder.Filter.PAETH, e.getFilter());
+        e = Chart_PngEncoder.forFormat("PNG");
+        assertEquals(Deflater.DEFAULT_COMPRESSION, e.getLevel());
+        assertEquals(Chart_PngEncoder.Filter.NONE, e.getFilter());
+        assertEquals(3, Chart_PngEncoder.forFormat("PNG:3").getLevel());
+        assertThrows(IllegalArgumentException.class,
+                () -> Chart_PngEncoder.forFormat("PNG:bad"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Chart_PngEncoder.forFormat("JPEG"));
+    }
+
+    @Test
+    public void testCombineAdler() {
+        Random r = new Random(3);
+        byte[] b = new byte[200000];
+        r.nextBytes(b);
+        Adler32 all = new Adler32();
+        all.update(b);
+        int[][] splits = {{0}, {b.length}, {1, 2, 3}, {65521, 131042},
+            {70000, 70000, 199999}};
+        for (int[] s : splits) {
+            long a = 1L;
+            int from = 0;
+            for (int i = 0; i <= s.length; i++) {
+                int to = i < s.length ? s[i] : b.length;
+                Adler32 part = new Adler32();
+                part.update(b, from, to - from);
+                a = Chart_PngEncoder.combineAdler(a, part.getValue(),
+                        to - from);
+                from = to;
+            }
+            assertEquals(all.getValue(), a);
+        }
+    }
+
+    /**
+     * @return A TYPE_INT_ARGB image of gradients with noise so that each
+     * filter has something to do. If alpha is false every pixel is opaque.
+     */
+    private static BufferedImage newImage(Random r, int w, int h,
+            boolean alpha) {
+        BufferedImage image = new BufferedImage(w, h,
+                BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int a = alpha ? r.nextInt(256) : 255;
+                int red = (x * 7 + r.nextInt(4)) & 0xFF;
+                int green = (y * 5 + r.nextInt(4)) & 0xFF;
+                int blue = r.nextInt(256);
+                image.setRGB(x, y, a << 24 | red << 16 | green << 8 | blue);
+            }
+        }
+        return image;
+    }
+
+    private static void assertRoundTrip(BufferedImage image,
+            Chart_PngEncoder e, String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        e.write(image, out);
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(
+                out.toByteArray()));
+        assertNotNull(read);
+        assertEquals(image.getWidth(), read.getWidth(), message);
+        assertEquals(image.getHeight(), read.getHeight(), message);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(image.getRGB(x, y), read.getRGB(x, y), message
+                        + " at " + x + "," + y);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Chart_RasterRenderTarget}.
+ */
+public class Chart_RasterRenderTargetTest {
+
+    @Test
+    public void testClipToGraphics() {
+        BufferedImage bi = new BufferedImage(20, 20,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = bi.createGraphics();
+        g.setColor(Color.RED);
+        Chart_RasterRenderTarget r = new Chart_RasterRenderTarget(bi, g);
+        // No clip.
+        assertTrue(r.clipToGraphics());
+        r.fillRect(-5, -5, 30, 30);
+        assertEquals(400, count(bi));
+        // A rectangle clip.
+        g.setColor(Color.BLUE);
+        r.setPaint(Color.BLUE);
+        g.clipRect(5, 6, 10, 4);
+        assertTrue(r.clipToGraphics());
+        assertEquals(6, r.getMinRow());
+        assertEquals(9, r.getMaxRow());
+        r.drawMarker(5, 6, Chart_Marker.PLUS, 3);
+        BufferedImage expected = new BufferedImage(20, 20,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D eg = expected.createGraphics();
+        eg.setColor(Color.RED);
+        eg.fillRect(0, 0, 20, 20);
+        eg.setColor(Color.BLUE);
+        eg.clipRect(5, 6, 10, 4);
+        eg.drawLine(2, 6, 8, 6);
+        eg.drawLine(5, 3, 5, 9);
+        eg.dispose();
+        for (int col = 0; col < 20; col++) {
+            for (int row = 0; row < 20; row++) {
+                assertEquals(expected.getRGB(col, row), bi.getRGB(col, row),
+                        col + "," + row);
+            }
+        }
+        // A clip that is not a rectangle.
+        g.setClip(new Ellipse2D.Double(0, 0, 10, 10));
+        assertFalse(r.clipToGraphics());
+        assertEquals(6, r.getMinRow());
+        g.dispose();
+    }
+
+    /**
+     * @param bi The image.
+     * @return The number of red pixels in bi.
+     */
+    private static int count(BufferedImage bi) {
+        int n = 0;
+        for (int col = 0; col < bi.getWidth(); col++) {
+            for (int row = 0; row < bi.getHeight(); row++) {
+                if (bi.getRGB(col, row) == Color.RED.getRGB()) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Chart_StreamingLine}.
+ */
+public class Chart_StreamingLineTest {
+
+    private static final int DATA_WIDTH = 500;
+
+    /**
+     * The X span of the window, which makes the X span of a column 1/8 so
+     * that the x values added are exact multiples of it.
+     */
+    private static final double X_SPAN = DATA_WIDTH / 8d;
+
+    /**
+     * The number of points added per column.
+     */
+    private static final int POINTS_PER_COLUMN = 4;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * The number of points added.
+     */
+    private long n;
+
+    @Test
+    public void testUpdateWithoutScroll() throws IOException {
+        Chart_StreamingLine c = newChart();
+        add(c, 200);
+        c.update();
+        for (int i = 0; i < 5; i++) {
+            add(c, 20);
+            assertUpdateMatchesRedraw(c, 0);
+        }
+    }
+
+    @Test
+    public void testUpdateScrollingAFewColumns() throws IOException {
+        Chart_StreamingLine c = newChart();
+        add(c, DATA_WIDTH + 100);
+        c.update();
+        for (int shift = 1; shift < 8; shift++) {
+            add(c, shift);
+            assertUpdateMatchesRedraw(c, shift);
+        }
+    }
+
+    @Test
+    public void testUpdateScrollingDataWidth() throws IOException {
+        Chart_StreamingLine c = newChart();
+        add(c, DATA_WIDTH + 100);
+        c.update();
+        add(c, DATA_WIDTH);
+        assertUpdateMatchesRedraw(c, DATA_WIDTH);
+        add(c, 3);
+        assertUpdateMatchesRedraw(c, 3);
+    }
+
+    @Test
+    public void testUpdateAfterRemoveBefore() throws IOException {
+        Chart_StreamingLine c = newChart();
+        add(c, DATA_WIDTH + 100);
+        c.update();
+        for (int i = 0; i < 3; i++) {
+            long first = c.getSeries().getFirstSequence();
+            add(c, 50);
+            assertUpdateMatchesRedraw(c, 50);
+            assertTrue(c.getSeries().getFirstSequence() > first);
+        }
+    }
+
+    /**
+     * Updates c, checks that this scrolled it by shift columns without a
+     * redraw, then checks the image is the same as a redraw of the window.
+     *
+     * @param c The chart.
+     * @param shift The number of columns the update should scroll.
+     */
+    private static void assertUpdateMatchesRedraw(Chart_StreamingLine c,
+            int shift) {
+        long redraws = c.getRedrawCount();
+        long scrolls = c.getScrollCount();
+        double minX = c.getMinX();
+        BufferedImage updated = c.update();
+        assertEquals(redraws, c.getRedrawCount());
+        assertEquals(scrolls + 1, c.getScrollCount());
+        assertEquals(minX + shift * X_SPAN / DATA_WIDTH, c.getMinX());
+        // redraw() recycles the image update() returned, so copy it first.
+        int w = updated.getWidth();
+        int h = updated.getHeight();
+        int[] expected = updated.getRGB(0, 0, w, h, null, 0, w);
+        BufferedImage redrawn = c.redraw();
+        assertEquals(w, redrawn.getWidth());
+        assertEquals(h, redrawn.getHeight());
+        assertArrayEquals(expected, redrawn.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    private Chart_StreamingLine newChart() throws IOException {
+        n = 0L;
+        Generic_Environment e = new Generic_Environment(
+                new Generic_Defaults());
+        return new Chart_StreamingLine(e, null, dir.resolve("streaming.png"),
+                "PNG", "Sensor", DATA_WIDTH, 250, "Time (s)", "Value", X_SPAN,
+                1 << 16, -2, -2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Adds {@link #POINTS_PER_COLUMN} points for each of columns columns. The
+     * y values go through many periods in a window so the fitted Y axis is
+     * the same for each window.
+     *
+     * @param c The chart.
+     * @param columns The number of columns to add points for.
+     */
+    private void add(Chart_StreamingLine c, int columns) {
+        double dx = X_SPAN / DATA_WIDTH / POINTS_PER_COLUMN;
+        for (int i = 0; i < columns * POINTS_PER_COLUMN; i++) {
+            n++;
+            double x = 1000d + n * dx;
+            c.add(x, 50d + 40d * Math.sin(x * 2d));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link Chart_ColumnarScatterData}.
+ */
+public class Chart_ColumnarScatterDataTest {
+
+    @Test
+    public void testIndexOf() {
+        Chart_ColumnarScatterData d = new Chart_ColumnarScatterData(4);
+        for (int i = 0; i < 1000; i++) {
+            d.add(i * 7L, i, -i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, d.indexOf(i * 7L));
+            assertEquals(-1, d.indexOf(i * 7L + 1));
+        }
+        // The index is maintained as points are added.
+        d.setCheckDuplicates(true);
+        d.addAll(new long[]{7L, 7001L}, new double[]{1d, 2d},
+                new double[]{3d, 4d}, 0, 2);
+        assertEquals(1001, d.size());
+        assertEquals(3d, d.getY(d.indexOf(7L)));
+        assertEquals(1000, d.indexOf(7001L));
+    }
+
+    @Test
+    public void testTooManyPointsToIndex() {
+        Chart_ColumnarScatterData d = new Chart_ColumnarScatterData(1);
+        d.setCheckDuplicates(true);
+        d.add(1L, 0d, 0d);
+        int max = Chart_ColumnarScatterData.MAX_INDEX_LENGTH / 2;
+        // The index is built for all the points before any are added.
+        for (int n : new int[]{max, (1 << 28) * 3, Integer.MAX_VALUE}) {
+            assertThrows(IllegalStateException.class,
+                    () -> d.addAll(new long[1], new double[1], new double[1],
+                            0, n));
+        }
+        assertEquals(1, d.size());
+        assertEquals(0, d.indexOf(1L));
+    }
+}
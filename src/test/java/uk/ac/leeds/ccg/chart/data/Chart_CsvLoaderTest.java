@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link Chart_CsvLoader}.
+ */
+public class Chart_CsvLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testParseSameAsParseDouble() throws IOException {
+        Random r = new Random(31);
+        List<String> fields = new ArrayList<>();
+        String[] fixed = {"0", "-0", "+1", "0.1", ".5", "5.", "-0.000",
+            "1e5", "1E-5", "2.5e+3", "123456789012345", "1234567890123456789",
+            "0.30000000000000004", "9007199254740993", "1e22", "1e23",
+            "1e-22", "1e-23", "4.9e-324", "1.7976931348623157e308", "1e400",
+            "000123.4500", " 7 ", "NaN", "-Infinity"};
+        for (String f : fixed) {
+            fields.add(f);
+        }
+        for (int i = 0; i < 20000; i++) {
+            fields.add(randomNumber(r));
+        }
+        StringBuilder sb = new StringBuilder("x,y\n");
+        for (int i = 0; i < fields.size(); i++) {
+            sb.append(i).append(',').append(fields.get(i))
+                    .append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Path file = write(sb.toString());
+        for (int chunks : new int[]{1, 7}) {
+            Chart_CsvLoader l = new Chart_CsvLoader(file);
+            l.setChunks(chunks);
+            Chart_CsvLoader.Columns c = l.load(1, 0);
+            assertEquals(fields.size(), c.n);
+            for (int i = 0; i < c.n; i++) {
+                assertEquals(Double.parseDouble(fields.get(i)),
+                        c.values[0][i], "\"" + fields.get(i) + "\"");
+                assertEquals((double) i, c.values[1][i]);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyFieldsAndDelimiter() throws IOException {
+        Path file = write("1;2;3\n4;;6\n\n;8;\n");
+        Chart_CsvLoader l = new Chart_CsvLoader(file);
+        l.setDelimiter(';');
+        l.setHeader(false);
+        Chart_CsvLoader.Columns c = l.load(0, 1, 2);
+        assertEquals(3, c.n);
+        assertEquals(Double.NaN, c.values[1][1]);
+        assertEquals(Double.NaN, c.values[0][2]);
+        assertEquals(Double.NaN, c.values[2][2]);
+        assertEquals(1L, c.nans[0]);
+        assertEquals(2d, c.min[1]);
+        assertEquals(8d, c.max[1]);
+    }
+
+    @Test
+    public void testNotANumber() throws IOException {
+        Path file = write("x\n1\nabc\n");
+        assertThrows(NumberFormatException.class,
+                () -> new Chart_CsvLoader(file).load(0));
+    }
+
+    @Test
+    public void testScatterBoundsOfRowsLoaded() throws IOException {
+        // The row with x = -100 has no y so is not loaded.
+        Path file = write("id,x,y\n9007199254740993,1,2\n2,-100,\n"
+                + "-3,5,-1\n");
+        Chart_ColumnarScatterData d = new Chart_CsvLoader(file)
+                .loadScatter(0, 1, 2);
+        assertEquals(2, d.size());
+        assertEquals(9007199254740993L, d.getId(0));
+        assertEquals(-3L, d.getId(1));
+        assertEquals(1d, d.minX.toDouble());
+        assertEquals(5d, d.maxX.toDouble());
+        assertEquals(-1d, d.minY.toDouble());
+        assertEquals(2d, d.maxY.toDouble());
+        d = new Chart_CsvLoader(file).loadScatter(-1, 1, 2);
+        assertEquals(0L, d.getId(0));
+        assertEquals(2L, d.getId(1));
+    }
+
+    @Test
+    public void testScatterNoRowsLoaded() throws IOException {
+        Path file = write("x,y\n1,\n,2\n");
+        Chart_ColumnarScatterData d = new Chart_CsvLoader(file)
+                .loadScatter(-1, 0, 1);
+        assertEquals(0, d.size());
+        assertNull(d.minX);
+        assertNull(d.maxY);
+    }
+
+    @Test
+    public void testLineBoundsOfRowsLoaded() throws IOException {
+        Path file = write("x,y,z\n1,10,\n2,,7\n3,30,\n");
+        Chart_LineData d = new Chart_LineData();
+        Chart_CsvLoader l = new Chart_CsvLoader(file);
+        l.loadLine(d, "y", 0, 1);
+        assertEquals(1d, d.minX.toDouble());
+        assertEquals(3d, d.maxX.toDouble());
+        assertEquals(10d, d.minY.toDouble());
+        assertEquals(30d, d.maxY.toDouble());
+        l.loadLine(d, "empty", 1, 2);
+        assertEquals(0, d.maps.get("empty").size());
+        assertEquals(1d, d.minX.toDouble());
+        assertEquals(30d, d.maxY.toDouble());
+    }
+
+    @Test
+    public void testLineUnsortedWithDuplicateX() throws IOException {
+        Random r = new Random(37);
+        TreeMap<Double, Double> expected = new TreeMap<>();
+        StringBuilder sb = new StringBuilder("x,y\n");
+        for (int i = 0; i < 50000; i++) {
+            double x = r.nextInt(10000) / 8d;
+            double y = r.nextInt(1000);
+            if (i % 100 == 0) {
+                sb.append(x).append(",\n");
+            } else {
+                sb.append(x).append(',').append(y).append('\n');
+                expected.put(x, y);
+            }
+        }
+        Chart_LineData d = new Chart_LineData();
+        new Chart_CsvLoader(write(sb.toString())).loadLine(d, "s", 0, 1);
+        Chart_LineSeries s = d.maps.get("s");
+        assertEquals(expected.size(), s.size());
+        int i = 0;
+        for (Map.Entry<Double, Double> e : expected.entrySet()) {
+            double x = e.getKey();
+            double y = e.getValue();
+            assertEquals(x, s.getXs()[i]);
+            assertEquals(y, s.getYs()[i]);
+            i++;
+        }
+        assertEquals(expected.firstKey().doubleValue(), d.minX.toDouble());
+        assertEquals(expected.lastKey().doubleValue(), d.maxX.toDouble());
+    }
+
+    @Test
+    public void testLineDescending() throws IOException {
+        int n = 400000;
+        StringBuilder sb = new StringBuilder("x,y\n");
+        for (int i = n - 1; i >= 0; i--) {
+            sb.append(i).append(',').append(i % 7).append('\n');
+        }
+        Chart_LineData d = new Chart_LineData();
+        new Chart_CsvLoader(write(sb.toString())).loadLine(d, "s", 0, 1);
+        Chart_LineSeries s = d.maps.get("s");
+        assertEquals(n, s.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals((double) i, s.getXs()[i]);
+            assertEquals((double) (i % 7), s.getYs()[i]);
+        }
+    }
+
+    @Test
+    public void testColumnGivenTwice() throws IOException {
+        Path file = write("x,y\n1,2\n3,4\n");
+        Chart_CsvLoader.Columns c = new Chart_CsvLoader(file).load(
+                new int[]{1, 0, 1}, new int[]{0, 0});
+        assertArrayEquals(new double[]{2, 4}, c.values[0]);
+        assertArrayEquals(new double[]{1, 3}, c.values[1]);
+        assertArrayEquals(new double[]{2, 4}, c.values[2]);
+        assertArrayEquals(new long[]{1, 3}, c.longs[0]);
+        assertArrayEquals(new long[]{1, 3}, c.longs[1]);
+        c = new Chart_CsvLoader(file).load(new int[0], new int[]{1});
+        assertArrayEquals(new long[]{2, 4}, c.longs[0]);
+        Chart_ColumnarScatterData d = new Chart_CsvLoader(file)
+                .loadScatter(-1, 0, 0);
+        assertEquals(2, d.size());
+        assertEquals(3d, d.getX(1));
+        assertEquals(3d, d.getY(1));
+    }
+
+    @Test
+    public void testIdNotAnInteger() throws IOException {
+        Path file = write("id,x,y\n1.5,1,2\n");
+        assertThrows(NumberFormatException.class,
+                () -> new Chart_CsvLoader(file).loadScatter(0, 1, 2));
+        Path missing = write("id,x,y\n,1,2\n");
+        assertThrows(NumberFormatException.class,
+                () -> new Chart_CsvLoader(missing).loadScatter(0, 1, 2));
+    }
+
+    private Path write(String s) throws IOException {
+        Path file = Files.createTempFile(dir, "test", ".csv");
+        Files.writeString(file, s, StandardCharsets.US_ASCII);
+        return file;
+    }
+
+    /**
+     * @return A decimal with up to 20 digits, possibly with an exponent.
+     */
+    private static String randomNumber(Random r) {
+        StringBuilder sb = new StringBuilder();
+        if (r.nextBoolean()) {
+            sb.append('-');
+        }
+        int digits = 1 + r.nextInt(20);
+        int point = r.nextInt(digits + 1);
+        for (int i = 0; i < digits; i++) {
+            if (i == point) {
+                sb.append('.');
+            }
+            sb.append((char) ('0' + r.nextInt(10)));
+        }
+        if (r.nextInt(4) == 0) {
+            sb.append('e').append(r.nextInt(60) - 30);
+        }
+        return sb.toString();
+    }
+}
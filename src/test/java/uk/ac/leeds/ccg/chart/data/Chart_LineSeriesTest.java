@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link Chart_LineSeries}.
+ */
+public class Chart_LineSeriesTest {
+
+    @Test
+    public void testAddInAnyOrder() {
+        Random r = new Random(23);
+        Chart_LineSeries s = new Chart_LineSeries(1);
+        TreeMap<Double, Double> expected = new TreeMap<>();
+        for (int i = 0; i < 5000; i++) {
+            // Few distinct x values so that some points are replaced.
+            double x = r.nextInt(2000) / 4d;
+            double y = r.nextDouble();
+            int index = s.add(x, y);
+            expected.put(x, y);
+            assertEquals(x, s.getXs()[index]);
+            assertEquals(y, s.getYs()[index]);
+        }
+        assertEquals(expected.size(), s.size());
+        int i = 0;
+        for (Map.Entry<Double, Double> e : expected.entrySet()) {
+            double x = e.getKey();
+            double y = e.getValue();
+            assertEquals(x, s.getXs()[i]);
+            assertEquals(y, s.getYs()[i]);
+            assertEquals(i, s.indexOf(x));
+            assertEquals(y, s.get(x));
+            i++;
+        }
+        assertEquals(-1, s.indexOf(-1d));
+        assertEquals(Double.NaN, s.get(0.1d));
+    }
+
+    @Test
+    public void testRangeSearch() {
+        Chart_LineSeries s = new Chart_LineSeries();
+        for (int i = 0; i < 100; i++) {
+            s.add(i * 2, i);
+        }
+        double[] xs = s.getXs();
+        for (double x = -3; x <= 203; x += 0.5) {
+            int from = 0;
+            while (from < s.size() && xs[from] < x) {
+                from++;
+            }
+            int to = 0;
+            while (to < s.size() && xs[to] <= x) {
+                to++;
+            }
+            assertEquals(from, s.fromIndex(x), "fromIndex " + x);
+            assertEquals(to, s.toIndex(x), "toIndex " + x);
+        }
+        Chart_LineSeries empty = new Chart_LineSeries();
+        assertEquals(0, empty.fromIndex(1d));
+        assertEquals(0, empty.toIndex(1d));
+    }
+
+    @Test
+    public void testTrimToSize() {
+        Chart_LineSeries s = new Chart_LineSeries(100);
+        s.add(2, 3);
+        s.add(1, 4);
+        s.trimToSize();
+        assertEquals(2, s.getXs().length);
+        assertEquals(1d, s.getXs()[0]);
+        assertEquals(4d, s.getYs()[0]);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link Chart_RingSeries}.
+ */
+public class Chart_RingSeriesTest {
+
+    @Test
+    public void testMinMaxAgainstScan() {
+        Random r = new Random(29);
+        int capacity = 64;
+        Chart_RingSeries s = new Chart_RingSeries(capacity);
+        assertEquals(Double.NaN, s.getMinY());
+        assertEquals(Double.NaN, s.getMaxY());
+        double x = 0;
+        for (int i = 0; i < 20000; i++) {
+            x += r.nextInt(3);
+            // Few distinct y values so that there are ties.
+            double y = r.nextInt(20);
+            long seq = s.add(x, y);
+            assertEquals(i, seq);
+            if (r.nextInt(10) == 0) {
+                s.removeBefore(x - r.nextInt(40));
+            }
+            assertEquals(Math.min(capacity, s.size()), s.size());
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < s.size(); j++) {
+                min = Math.min(min, s.getY(j));
+                max = Math.max(max, s.getY(j));
+            }
+            assertEquals(min, s.getMinY(), "at " + i);
+            assertEquals(max, s.getMaxY(), "at " + i);
+            assertEquals(x, s.getLastX());
+            assertEquals(y, s.getLastY());
+            assertEquals(s.getCount() - s.size(), s.getFirstSequence());
+        }
+    }
+
+    @Test
+    public void testOverwritesOldest() {
+        Chart_RingSeries s = new Chart_RingSeries(4);
+        for (int i = 0; i < 10; i++) {
+            s.add(i, 10 - i);
+        }
+        assertEquals(4, s.size());
+        assertEquals(10, s.getCount());
+        assertEquals(6, s.getFirstSequence());
+        for (int j = 0; j < 4; j++) {
+            assertEquals(6d + j, s.getX(j));
+        }
+        assertEquals(1d, s.getMinY());
+        assertEquals(4d, s.getMaxY());
+    }
+
+    @Test
+    public void testRemoveBeforeKeepsLastBefore() {
+        Chart_RingSeries s = new Chart_RingSeries(16);
+        for (int i = 0; i < 10; i++) {
+            s.add(i, i);
+        }
+        assertEquals(5, s.removeBefore(5.5));
+        assertEquals(5d, s.getX(0));
+        assertEquals(5, s.size());
+        assertEquals(5d, s.getMinY());
+        assertEquals(0, s.removeBefore(5d));
+        s.clear();
+        assertEquals(0, s.size());
+        assertEquals(10, s.add(20, 1));
+    }
+
+    @Test
+    public void testAddOutOfOrder() {
+        Chart_RingSeries s = new Chart_RingSeries(4);
+        s.add(2, 0);
+        assertThrows(IllegalArgumentException.class, () -> s.add(1, 0));
+    }
+}